@@ -59,6 +59,7 @@ public class Capture1 extends CordovaPlugin implements BroadCastService.DetectRe
 
     public static final String ACTION_RECOGNIZED_ITEM   = "com.creative.informatics.detect.RECOGNIZED_ITEM";
     public static final String KEY_RESULT_DATA          = "com.creative.informatics.RESULT_DATA";
+    public static final String KEY_STABLE               = "com.creative.informatics.STABLE";
 
     private boolean cameraPermissionInManifest;     // Whether or not the CAMERA permission is declared in AndroidManifest.xml
     private BroadCastService broadcastService;
@@ -245,14 +246,16 @@ public class Capture1 extends CordovaPlugin implements BroadCastService.DetectRe
 
     private void onRecognizeActivityResult(Request req, Intent intent, boolean shouldBeFinish) {
         String data = null;
+        boolean stable = false;
 
         if (intent != null){
             // Get json object for recognized data
             data = intent.getStringExtra(Capture1.KEY_RESULT_DATA);
+            stable = intent.getBooleanExtra(Capture1.KEY_STABLE, false);
         }
 
         req.results = new JSONArray();
-        req.results.put(createRecognizedResult(data));
+        req.results.put(createRecognizedResult(data, stable));
         pendingRequests.resolveWithSuccess(req, shouldBeFinish);
     }
 
@@ -260,10 +263,11 @@ public class Capture1 extends CordovaPlugin implements BroadCastService.DetectRe
      * Creates a JSONObject that represents a File from the Uri
      *
      * @param data the Uri of the audio/image/video
+     * @param stable whether the values are stable, see OcrOptions.consensusFrames
      * @return a JSONObject that represents a File
      * @throws IOException
      */
-    private JSONObject createRecognizedResult(String data) {
+    private JSONObject createRecognizedResult(String data, boolean stable) {
         JSONObject obj = new JSONObject();
         JSONArray result;
         try {
@@ -274,6 +278,7 @@ public class Capture1 extends CordovaPlugin implements BroadCastService.DetectRe
         }
         try {
             obj.put("Detected Items", result);
+            if (stable) obj.put("Stable", true);
         } catch (JSONException e) {
             e.printStackTrace();
         }
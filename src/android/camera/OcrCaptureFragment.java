@@ -33,16 +33,20 @@ import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.app.ActivityCompat;
-import android.text.TextUtils;
 import android.util.DisplayMetrics;
 import android.util.Log;
-import android.util.Pair;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.creative.informatics.core.AttributeKeywordMatcher;
+import com.creative.informatics.core.EngineLog;
+import com.creative.informatics.core.FieldEntry;
+import com.creative.informatics.core.MatchOptions;
+import com.creative.informatics.core.MetaEngineController;
+import com.creative.informatics.core.PhoneticKeyIndex;
 import com.creative.informatics.ui.CameraSource;
 import com.creative.informatics.ui.CameraSourcePreview;
 import com.creative.informatics.ui.GraphicOverlay;
@@ -50,6 +54,8 @@ import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GoogleApiAvailability;
 import com.google.android.gms.vision.text.TextRecognizer;
 
+import de.zedlitz.phonet4java.DaitchMokotoff;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -57,11 +63,8 @@ import org.json.JSONObject;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static java.lang.Math.max;
 import static java.lang.Math.min;
@@ -85,8 +88,10 @@ public final class OcrCaptureFragment extends Fragment {
     private CameraSourcePreview mPreview;
     private GraphicOverlay<OcrGraphic> mGraphicOverlay;
 
-    public static String ocrCountry;
     public static List<OCRDictionary> ocrDict;
+    public static PhoneticKeyIndex ocrKeywordIndex;     // phonetic keywords of all non attribute entries of ocrDict
+    public static AttributeKeywordMatcher ocrAttributeMatcher;  // keywords of all attribute entries of ocrDict
+    public static MatchOptions ocrMatchOptions = new MatchOptions();
     public static boolean isDebug;
     public static String metaEngineId;
 
@@ -94,6 +99,22 @@ public final class OcrCaptureFragment extends Fragment {
     private Activity mActivity;
     private String mPackage;
     private MetaEngineController mMetaEngine = null;
+    private OcrDetectorProcessor mProcessor;
+
+    static {
+        // the matching engine has no Android log of its own
+        EngineLog.setSink(new EngineLog.Sink() {
+            @Override
+            public void d(String tag, String message) {
+                Log.d(tag, message);
+            }
+
+            @Override
+            public void e(String tag, String message) {
+                Log.e(tag, message);
+            }
+        });
+    }
 
     /**
      * Initializes the UI and creates the detector pipeline.
@@ -104,19 +125,48 @@ public final class OcrCaptureFragment extends Fragment {
         //boolean useFlash = getIntent().getBooleanExtra(UseFlash, false);
         try {
             JSONObject ocrOption = new JSONObject(strOption);
-            ocrCountry = ocrOption.optString("country");
+            ocrMatchOptions = new MatchOptions();
+            ocrMatchOptions.country = ocrOption.optString("country");
             isDebug = ocrOption.optBoolean("debug");
             metaEngineId = ocrOption.optString("fieldMatchingMethodAndroid");
             if( metaEngineId.isEmpty() ) metaEngineId = "native";
             mMetaEngine = new MetaEngineController(metaEngineId);
+            mMetaEngine.setMaxPhoneticCodes(ocrOption.optInt("phoneticMaxCodes", DaitchMokotoff.DEFAULT_MAX_BRANCHES));
+            mMetaEngine.setPhoneticCacheSize(ocrOption.optInt("phoneticCacheSize", MetaEngineController.DEFAULT_PHONETIC_CACHE_SIZE));
+            ocrMatchOptions.linearValuePatterns = "dfa".equals(ocrOption.optString("valuePatternEngine"));
+            ocrMatchOptions.valuePatternTimeLimit = ocrOption.optInt("valuePatternTimeLimit", 50);
+            ocrMatchOptions.consensusFrames = Math.max(0, ocrOption.optInt("consensusFrames", 0));
+            ocrMatchOptions.consensusThreshold = (float) ocrOption.optDouble("consensusThreshold", 0.6);
+            ocrMatchOptions.extractionThreads = ocrOption.optInt("extractionThreads", 1);
+            ocrMatchOptions.frameTimeBudget = ocrOption.optInt("frameTimeBudget", 0);
+
+            JSONObject postalCodes = ocrOption.optJSONObject("postalCodes");
+            if( postalCodes != null ){
+                Iterator<String> countries = postalCodes.keys();
+                while( countries.hasNext() ){
+                    String country = countries.next();
+                    JSONArray rules = postalCodes.optJSONArray(country);
+                    if( rules == null ) continue;
+
+                    List<String> pack = new ArrayList<String>();
+                    for( int i=0; i<rules.length(); i++ ) pack.add(rules.optString(i));
+                    ocrMatchOptions.postalCodes.put(country, pack);
+                }
+            }
 
             JSONArray ocrDictionary = ocrOption.optJSONArray("dictionary");
             ocrDict = new ArrayList<OCRDictionary>();
+            ocrKeywordIndex = new PhoneticKeyIndex(mMetaEngine);
+            ocrAttributeMatcher = new AttributeKeywordMatcher();
             for( int i=0; i<ocrDictionary.length(); i++ ){
                 ocrDict.add(new OCRDictionary(mMetaEngine, ocrDictionary.getJSONObject(i)));
+                ocrDict.get(i).addKeywordsTo(ocrKeywordIndex, i);
+                ocrDict.get(i).addKeywordsTo(ocrAttributeMatcher, i);
             }
-            Log.d(TAG, "optCountry: " + ocrCountry);
+            ocrAttributeMatcher.build();
+            Log.d(TAG, "keyword index: " + ocrKeywordIndex);
             Log.d(TAG, "isDebug: " + isDebug);
+            Log.d(TAG, "match options: " + ocrMatchOptions);
         } catch (JSONException e) {
             e.printStackTrace();
         }
@@ -199,7 +249,8 @@ public final class OcrCaptureFragment extends Fragment {
         // is set to receive the text recognition results and display graphics for each text block
         // on screen.
         TextRecognizer textRecognizer = new TextRecognizer.Builder(context).build();
-        textRecognizer.setProcessor(new OcrDetectorProcessor(mGraphicOverlay, mActivity.getApplicationContext()));
+        mProcessor = new OcrDetectorProcessor(mGraphicOverlay, mActivity.getApplicationContext());
+        textRecognizer.setProcessor(mProcessor);
 
         if (!textRecognizer.isOperational()) {
             // Note: The first time that an app using a Vision API is installed on a
@@ -255,6 +306,20 @@ public final class OcrCaptureFragment extends Fragment {
     public void onPause() {
         super.onPause();
 
+        if ( isDebug && mMetaEngine != null ) {
+            Log.d(TAG, "phonetic cache: " + mMetaEngine.getPhoneticCacheStats());
+        }
+        if ( isDebug && mProcessor != null ) {
+            Log.d(TAG, "frame diff: " + mProcessor.getFrameDiffStats());
+            Log.d(TAG, "tracking: " + mProcessor.getTrackingStats());
+            Log.d(TAG, "scheduler: " + mProcessor.getSchedulerStats());
+        }
+        if ( isDebug && ocrDict != null ) {
+            for( OCRDictionary dict : ocrDict ){
+                if( dict.hasPatterns() ) Log.d(TAG, "value patterns of " + dict.name + ": " + dict.getValuePatternStats());
+            }
+        }
+
         if (mPreview != null) {
             mPreview.stop();
         }
@@ -366,191 +431,28 @@ public final class OcrCaptureFragment extends Fragment {
     }
 
 
-    public static class OCRDictionary {
-        private static final String DEFAULT_VALUE = "---";
-
-        public String name;
-        public boolean mandatory;
-        public List<Pair<String,String>> keywords;      // Keyword & PhoneticKeyword Pair
-        public List<String> patterns;
-        public boolean attribute;
-        public String resKeyword;
-        public String resValue;
-        public int indexOfPattern;
-        private MetaEngineController mMetaEngine;
-
+    /**
+     * A field of the dictionary of the OCR options.
+     */
+    public static class OCRDictionary extends FieldEntry {
         public OCRDictionary( MetaEngineController engine, JSONObject object){
-            name = object.optString("Name");
-            mandatory = object.optBoolean("Mandatory");
-            keywords = new ArrayList<Pair<String,String>>();
-            mMetaEngine = engine;
+            super(engine, object.optString("Name"), object.optBoolean("Mandatory"), getKeywords(object),
+                    getPatterns(object), object.optBoolean("Attribute"), ocrMatchOptions);
+        }
 
+        private static List<String> getKeywords(JSONObject object){
+            List<String> keywords = new ArrayList<String>();
             JSONArray array = object.optJSONArray("Keywords");
             if( array != null) {
-                for (int i = 0; i < array.length(); i++) {
-                    String keyword = array.optString(i);
-                    String phoneticKey = mMetaEngine.getPhoneticText(keyword);
-                    keywords.add(Pair.create(keyword, phoneticKey));
-                }
-            }
-
-            patterns = new ArrayList<String>();
-            String strPatterns = object.optString("Patterns");
-            if( !strPatterns.isEmpty() )
-                patterns = Arrays.asList(strPatterns.split("&&"));
-            else
-                patterns = null;
-
-            attribute = object.optBoolean("Attribute");
-
-            resKeyword = "";
-            resValue = "";
-            indexOfPattern = -1;
-        }
-
-        public boolean hasPatterns(){
-            return patterns!=null && patterns.size()>0;
-        }
-
-        private String getKeyName(){
-            return resKeyword.isEmpty() ? name : resKeyword;
-        }
-
-        public String getDisplayValue() {
-            return resValue.isEmpty() ? DEFAULT_VALUE : resValue;
-        }
-
-        public String getDisplayString(){
-            String result = name + ":" + getDisplayValue();
-            result += "/" + resKeyword + "/" + (indexOfPattern + 1);
-
-            return result;
-        }
-
-        public boolean isSetValue(){
-            return !resValue.isEmpty();
-        }
-
-        public int getIndexKeywords(String string){
-            for(int i=0; i<keywords.size(); i++){
-                if( attribute ) {
-                    String key = keywords.get(i).first;
-                    if( checkContainKeyword(key, string) )
-                        return i;
-                } else {
-                    if (matchMetaPhonetic(keywords.get(i), string))
-                        return i;
-                }
-            }
-            return -1;
-        }
-
-        private boolean checkContainKeyword(String key, String container){
-            String sKey = key.toLowerCase();
-            String sContainer = container.toLowerCase();
-            if( sContainer.contains(sKey) ){
-                if( sKey.length() > 10 ) return true;
-
-                Pattern p = Pattern.compile("[a-z0-9]"+sKey);
-                if (p.matcher(container).find())
-                    return false;
-
-                p = Pattern.compile(sKey+"[a-z0-9]");
-                if( p.matcher(container).find())
-                    return false;
-
-                return true;
-            }
-
-            return false;
-        }
-
-        private boolean matchMetaPhonetic(Pair<String, String> key, String container) {
-            String phoneticKey = key.second;
-
-            int wordCount = key.first.split(" ").length;
-            String[] words = container.split("[ ]+");
-            if( words.length < wordCount ) return false;
-
-            List<String> list = new ArrayList<String>();
-            for( int j=0; j<wordCount; j++){
-                list.add(words[j]);
+                for (int i = 0; i < array.length(); i++) keywords.add(array.optString(i));
             }
-            String limitedString = TextUtils.join(" ", list);
-            String phoneticText = mMetaEngine.getPhoneticText(limitedString);
-
-            if( phoneticText.equalsIgnoreCase(phoneticKey))
-                return true;
-
-            return false;
+            return keywords;
         }
 
-        public Map<String, Object> checkMatchValuePattern(String string){
-            if( string==null || string.isEmpty() ) return null;
-            if( patterns == null) return null;
-
-            final HashMap<String, Object> resultMap = new HashMap<String, Object>();
-            String res = ""; int num = -1;
-            boolean result = false;
-            if( !hasPatterns() ){
-                res = string;
-                num = -1;
-                result = true;
-            } else {
-                for (int i=0; i<patterns.size(); i++) {
-                    String pattern = patterns.get(i);
-                    Pattern p = Pattern.compile("(?i:"+pattern+")");
-                    Matcher match = p.matcher(string);
-                    if( match.find() ) {
-                        String strMatched = match.group();
-                        if( strMatched.length() > res.length() ){
-                            res = strMatched;
-                            num = i;
-                            result = true;
-                        }
-                    }
-                }
-            }
-            if( result ){
-                resultMap.put("result_value", res);
-                resultMap.put("pattern_num", num);
-                return resultMap;
-            }
-            return null;
-        }
-
-        public boolean setValueIfAcceptable(String string){
-            if( attribute ) {
-                if( string!=null && !string.isEmpty() ) {
-                    if (resValue.isEmpty()) {
-                        resValue = string;
-                        return true;
-                    }
-                }
-                return false;
-            }
-
-            Map<String, Object> result = checkMatchValuePattern(string);
-            if( result == null) return false;
-
-            String value = (String)result.get("result_value");
-            if(value==null) value = "";
-            Integer num = (Integer) result.get("pattern_num");
-            if(num==null) num = -1;
-
-            if( isSetValue() ){
-                if( value.length() > resValue.length() ){
-                    resValue = value;
-                    indexOfPattern = num;
-                    return true;
-                }
-            } else {
-                resValue = value;
-                indexOfPattern = num;
-                return true;
-            }
-
-            return false;
+        private static List<String> getPatterns(JSONObject object){
+            String strPatterns = object.optString("Patterns");
+            if( strPatterns.isEmpty() ) return null;
+            return Arrays.asList(strPatterns.split("&&"));
         }
     }
 }
@@ -0,0 +1,32 @@
+package com.creative.informatics.camera;
+
+import android.graphics.Rect;
+import android.util.SparseArray;
+
+import com.creative.informatics.core.LineTable;
+
+import com.google.android.gms.vision.text.Text;
+import com.google.android.gms.vision.text.TextBlock;
+
+/**
+ * Turns the text blocks of the Google Vision text recognizer into the lines
+ * of the matching engine, which knows nothing of Android.
+ */
+final class VisionTextAdapter {
+    private VisionTextAdapter(){
+    }
+
+    /**
+     * Adds the lines of the blocks to the table, block by block, each line
+     * with its text and bounding box.
+     */
+    static void addLines(SparseArray<TextBlock> blocks, LineTable<Text> lines){
+        for( int i=0; i<blocks.size(); i++ ){
+            lines.startBlock();
+            for( Text text : blocks.valueAt(i).getComponents() ){
+                Rect box = text.getBoundingBox();
+                lines.add(text, text.getValue(), box.left, box.top, box.right, box.bottom);
+            }
+        }
+    }
+}
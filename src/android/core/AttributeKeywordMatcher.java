@@ -0,0 +1,264 @@
+package com.creative.informatics.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Aho-Corasick automaton over the keywords of attribute dictionary entries.
+ *
+ * A keyword is found in a line like OCRDictionary.checkContainKeyword did:
+ * <ul>
+ * <li>the lower-cased line contains the lower-cased keyword,</li>
+ * <li>and keywords of up to 10 chars must not occur in the line as written
+ * (lower case) right after or before one of [a-z0-9].</li>
+ * </ul>
+ * The line is scanned once for all keywords, the boundaries are checked on
+ * the chars around each occurrence. Keywords with regex meta characters keep
+ * the original regex boundary check, with patterns compiled once.
+ *
+ * Lines and keywords are lower-cased with String.toLowerCase() as before, so
+ * final sigmas and the default locale are folded the same way. The few lines
+ * that change length when lower-cased (a dotted capital I) are searched
+ * keyword by keyword instead.
+ */
+public final class AttributeKeywordMatcher {
+    private static final int MAX_UNCHECKED_LENGTH = 10;     // longer keywords need no boundary check
+    private static final String REGEX_CHARS = "\\^$.|?*+()[]{}";
+
+    // keywords
+    private final List<String> mKeys = new ArrayList<String>();
+    private final List<int[]> mOwners = new ArrayList<int[]>();  // {entry, keyword}
+    private Pattern[] mBefore;
+    private Pattern[] mAfter;
+    private boolean[] mRegex;
+
+    // automaton: mDelta[state * mColumns + column]
+    private char[] mAsciiColumn;            // column of chars < 128
+    private char[] mOtherChars;             // sorted chars >= 128 that occur in keywords
+    private int mFirstOtherColumn;          // column of mOtherChars[0]
+    private int mColumns;
+    private int[] mDelta;
+    private int[][] mOutput;                // keywords that end in a state
+    private int[] mEmptyKeys;               // keywords "" are found everywhere
+
+    // state of the current line
+    private int mLine;
+    private int[] mContained;
+    private int[] mRejected;
+
+    public AttributeKeywordMatcher(){
+        build();
+    }
+
+    /**
+     * Adds keyword number keyword of dictionary entry number entry. Call
+     * {@link #build()} after the last one.
+     */
+    public void add(String key, int entry, int keyword){
+        mKeys.add(key.toLowerCase());
+        mOwners.add(new int[] { entry, keyword });
+    }
+
+    public int getKeywordCount(){
+        return mKeys.size();
+    }
+
+    public void build(){
+        int count = mKeys.size();
+        mBefore = new Pattern[count];
+        mAfter = new Pattern[count];
+        mRegex = new boolean[count];
+        mContained = new int[count];
+        mRejected = new int[count];
+        mLine = 0;
+
+        // columns: one per distinct keyword char, column 0 for all other chars
+        StringBuilder other = new StringBuilder();
+        mAsciiColumn = new char[128];
+        mColumns = 1;
+        List<Integer> empty = new ArrayList<Integer>();
+        for( int id=0; id<count; id++ ){
+            String key = mKeys.get(id);
+            if( key.isEmpty() ) empty.add(id);
+
+            for( int i=0; i<key.length(); i++ ){
+                char c = key.charAt(i);
+                if( REGEX_CHARS.indexOf(c) >= 0 ) mRegex[id] = true;
+
+                if( c < 128 ){
+                    if( mAsciiColumn[c] == 0 ) mAsciiColumn[c] = (char) mColumns++;
+                } else if( other.indexOf(String.valueOf(c)) < 0 ){
+                    other.append(c);
+                }
+            }
+        }
+        mOtherChars = other.toString().toCharArray();
+        Arrays.sort(mOtherChars);
+        mFirstOtherColumn = mColumns;
+        mColumns += mOtherChars.length;
+
+        mEmptyKeys = new int[empty.size()];
+        for( int i=0; i<mEmptyKeys.length; i++ ) mEmptyKeys[i] = empty.get(i);
+
+        // trie
+        int maxStates = 1;
+        for( String key : mKeys ) maxStates += key.length();
+
+        int[] delta = new int[maxStates * mColumns];
+        Arrays.fill(delta, -1);
+        List<List<Integer>> output = new ArrayList<List<Integer>>();
+        output.add(new ArrayList<Integer>());
+        int states = 1;
+
+        for( int id=0; id<count; id++ ){
+            String key = mKeys.get(id);
+            if( key.isEmpty() ) continue;
+
+            int state = 0;
+            for( int i=0; i<key.length(); i++ ){
+                int next = state * mColumns + column(key.charAt(i));
+                if( delta[next] < 0 ){
+                    delta[next] = states++;
+                    output.add(new ArrayList<Integer>());
+                }
+                state = delta[next];
+            }
+            output.get(state).add(id);
+        }
+
+        // failure links, turning the trie into a complete automaton (breadth first)
+        int[] fail = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+
+        for( int c=0; c<mColumns; c++ ){
+            if( delta[c] < 0 ){
+                delta[c] = 0;
+            } else {
+                fail[delta[c]] = 0;
+                queue[tail++] = delta[c];
+            }
+        }
+
+        while( head < tail ){
+            int state = queue[head++];
+            output.get(state).addAll(output.get(fail[state]));
+
+            for( int c=0; c<mColumns; c++ ){
+                int next = delta[state * mColumns + c];
+                if( next < 0 ){
+                    delta[state * mColumns + c] = delta[fail[state] * mColumns + c];
+                } else {
+                    fail[next] = delta[fail[state] * mColumns + c];
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        mDelta = Arrays.copyOf(delta, states * mColumns);
+        mOutput = new int[states][];
+        for( int s=0; s<states; s++ ){
+            List<Integer> ids = output.get(s);
+            mOutput[s] = new int[ids.size()];
+            for( int i=0; i<ids.size(); i++ ) mOutput[s][i] = ids.get(i);
+        }
+    }
+
+    private int column(char c){
+        if( c < 128 ) return mAsciiColumn[c];
+
+        int pos = Arrays.binarySearch(mOtherChars, c);
+        return pos >= 0 ? mFirstOtherColumn + pos : 0;
+    }
+
+    /**
+     * Finds the keywords in the line: for each dictionary entry the lowest
+     * matching keyword index is stored in matches[entry], -1 if none.
+     *
+     * @return the number of entries with a match
+     */
+    public int match(String line, int[] matches){
+        Arrays.fill(matches, -1);
+        if( mKeys.isEmpty() ) return 0;
+
+        if( ++mLine == Integer.MAX_VALUE ){
+            Arrays.fill(mContained, 0);
+            Arrays.fill(mRejected, 0);
+            mLine = 1;
+        }
+
+        String folded = line.toLowerCase();
+        if( folded.length() == line.length() ){
+            int state = 0;
+            for( int i=0; i<folded.length(); i++ ){
+                state = mDelta[state * mColumns + column(folded.charAt(i))];
+
+                for( int id : mOutput[state] ){
+                    found(id, line, i + 1 - mKeys.get(id).length());
+                }
+            }
+        } else {
+            // positions in the folded line are not those of the line
+            for( int id=0; id<mKeys.size(); id++ ){
+                String key = mKeys.get(id);
+                if( key.isEmpty() || !folded.contains(key) ) continue;
+
+                mContained[id] = mLine;
+                for( int at=line.indexOf(key); at>=0; at=line.indexOf(key, at + 1) ) found(id, line, at);
+            }
+        }
+
+        if( mEmptyKeys.length > 0 ){
+            boolean rejected = false;
+            for( int i=0; i<line.length() && !rejected; i++ ){
+                rejected = isBoundaryChar(line.charAt(i));
+            }
+            for( int id : mEmptyKeys ){
+                mContained[id] = mLine;
+                if( rejected ) mRejected[id] = mLine;
+            }
+        }
+
+        int found = 0;
+        for( int id=0; id<mKeys.size(); id++ ){
+            if( mContained[id] != mLine || !accept(id, line) ) continue;
+
+            int[] owner = mOwners.get(id);
+            if( matches[owner[0]] < 0 ) found++;
+            if( matches[owner[0]] < 0 || owner[1] < matches[owner[0]] ) matches[owner[0]] = owner[1];
+        }
+        return found;
+    }
+
+    private void found(int id, String line, int start){
+        mContained[id] = mLine;
+        if( mRegex[id] || mRejected[id] == mLine ) return;
+
+        String key = mKeys.get(id);
+        if( !line.regionMatches(start, key, 0, key.length()) ) return;
+
+        int end = start + key.length();
+        if( (start > 0 && isBoundaryChar(line.charAt(start - 1)))
+                || (end < line.length() && isBoundaryChar(line.charAt(end))) )
+            mRejected[id] = mLine;
+    }
+
+    private boolean accept(int id, String line){
+        String key = mKeys.get(id);
+        if( key.length() > MAX_UNCHECKED_LENGTH ) return true;
+        if( !mRegex[id] ) return mRejected[id] != mLine;
+
+        if( mBefore[id] == null ){
+            mBefore[id] = Pattern.compile("[a-z0-9]" + key);
+            mAfter[id] = Pattern.compile(key + "[a-z0-9]");
+        }
+        return !mBefore[id].matcher(line).find() && !mAfter[id].matcher(line).find();
+    }
+
+    private static boolean isBoundaryChar(char c){
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9');
+    }
+}
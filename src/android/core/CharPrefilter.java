@@ -0,0 +1,115 @@
+package com.creative.informatics.core;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Chars a text must contain for a value pattern to match it, e.g. a digit for
+ * "\d{4}" or one of "$@" for "\$\d+|\w+@\w+".
+ *
+ * The required char sets are derived from the pattern once, as bitmaps of
+ * their ASCII chars. A text is summarized once by {@link Chars} and then
+ * checked against every pattern with a few bit operations; texts lacking a
+ * required set cannot match and need no regex work. The check is
+ * conservative: a text with non-ASCII chars passes every set that has
+ * non-ASCII members.
+ */
+public final class CharPrefilter {
+    private static final int MAX_SETS = 8;
+
+    private final long[] mLow;                  // chars 0..63 of each set
+    private final long[] mHigh;                 // chars 64..127
+    private final boolean[] mOther;             // whether a set has chars >= 128
+
+    private CharPrefilter(List<int[]> sets){
+        mLow = new long[sets.size()];
+        mHigh = new long[sets.size()];
+        mOther = new boolean[sets.size()];
+
+        for( int s=0; s<sets.size(); s++ ){
+            int[] set = sets.get(s);
+            for( int i=0; i<set.length; i+=2 ){
+                for( int c=set[i]; c<=set[i + 1] && c<128; c++ ){
+                    if( c < 64 ) mLow[s] |= 1L << c; else mHigh[s] |= 1L << (c - 64);
+                }
+                if( set[i + 1] >= 128 ) mOther[s] = true;
+            }
+        }
+    }
+
+    /**
+     * The prefilter of a pattern, matched as Pattern.compile("(?i:" + regex
+     * + ")") would if caseInsensitive. Null if no char is required, or the
+     * pattern uses constructs {@link RegexDfa} cannot parse.
+     */
+    public static CharPrefilter compile(String regex, boolean caseInsensitive){
+        List<int[]> sets;
+        try {
+            sets = RegexDfa.requiredSets(regex, caseInsensitive);
+        } catch (RegexDfa.UnsupportedPatternException e) {
+            return null;
+        }
+
+        // only the most selective sets, those with the fewest ASCII chars, each once
+        for( int i=sets.size()-1; i>=0; i-- ){
+            boolean duplicate = false;
+            for( int j=0; j<i && !duplicate; j++ ) duplicate = Arrays.equals(sets.get(i), sets.get(j));
+            if( duplicate || asciiSize(sets.get(i)) == 128 ) sets.remove(i);
+        }
+        if( sets.isEmpty() ) return null;
+
+        int[][] sorted = sets.toArray(new int[sets.size()][]);
+        Arrays.sort(sorted, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] a, int[] b){
+                return asciiSize(a) - asciiSize(b);
+            }
+        });
+        return new CharPrefilter(Arrays.asList(sorted).subList(0, Math.min(sorted.length, MAX_SETS)));
+    }
+
+    private static int asciiSize(int[] set){
+        int size = 0;
+        for( int i=0; i<set.length && set[i]<128; i+=2 ) size += Math.min(set[i + 1], 127) - set[i] + 1;
+        return size;
+    }
+
+    public int getSetCount(){
+        return mLow.length;
+    }
+
+    /**
+     * Whether the text has a char of every required set.
+     */
+    public boolean mayMatch(Chars text){
+        for( int s=0; s<mLow.length; s++ ){
+            if( (mLow[s] & text.mLow) == 0 && (mHigh[s] & text.mHigh) == 0 && !(mOther[s] && text.mOther) )
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * The chars a text contains; reused for text after text.
+     */
+    public static final class Chars {
+        private long mLow;
+        private long mHigh;
+        private boolean mOther;
+
+        public Chars set(CharSequence text){
+            mLow = 0;
+            mHigh = 0;
+            mOther = false;
+
+            for( int i=0; i<text.length(); i++ ){
+                char c = text.charAt(i);
+                if( c < 64 ) mLow |= 1L << c;
+                else if( c < 128 ) mHigh |= 1L << (c - 64);
+                else mOther = true;
+            }
+            return this;
+        }
+    }
+}
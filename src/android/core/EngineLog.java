@@ -0,0 +1,31 @@
+package com.creative.informatics.core;
+
+/**
+ * Log of the matching engine. The engine runs on Android and on a plain JVM,
+ * so it logs to a sink set by the platform; without one nothing is logged.
+ */
+public final class EngineLog {
+    public interface Sink {
+        void d(String tag, String message);
+        void e(String tag, String message);
+    }
+
+    private static volatile Sink sSink;
+
+    private EngineLog(){
+    }
+
+    public static void setSink(Sink sink){
+        sSink = sink;
+    }
+
+    public static void d(String tag, String message){
+        Sink sink = sSink;
+        if( sink != null ) sink.d(tag, message);
+    }
+
+    public static void e(String tag, String message){
+        Sink sink = sSink;
+        if( sink != null ) sink.e(tag, message);
+    }
+}
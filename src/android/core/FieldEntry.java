@@ -0,0 +1,305 @@
+package com.creative.informatics.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.zedlitz.phonet4java.DaitchMokotoffCodes;
+
+/**
+ * A field of the dictionary: its keywords and value patterns, and the value
+ * read for it so far.
+ *
+ * Keywords match a line phonetically, with the engine the entry was created
+ * with, or for attribute entries by text. Values are the longest match of
+ * the patterns, or with consensus the value voted from the last readings.
+ */
+public class FieldEntry {
+    private static final String TAG = FieldEntry.class.getSimpleName();
+    private static final String DEFAULT_VALUE = "---";
+
+    public String name;
+    public boolean mandatory;
+    public List<String> keywords;
+    public List<String> patterns;                       // null if none
+    public boolean attribute;
+    public String resKeyword;
+    public String resValue;
+    public int indexOfPattern;
+    private MetaEngineController mMetaEngine;
+    private List<String> keywordPhonetics;              // phonetic text of each keyword
+    private long[] keywordKeys;                         // phonetic key of each keyword
+    private int[] keywordWordCounts;                    // number of words of each keyword
+    private List<DaitchMokotoffCodes> keywordCodes;     // all codes of each keyword, if the engine branches
+    private AttributeKeywordMatcher mAttributeMatcher;  // the keywords, if attribute
+    private final int[] mAttributeMatch = new int[1];
+    private ValuePatternSet mValuePatterns;             // patterns compiled once
+    // texts matched against the patterns in this frame and in the previous one
+    private HashMap<String, ValuePatternSet.Match> mValueMatches = new HashMap<String, ValuePatternSet.Match>();
+    private HashMap<String, ValuePatternSet.Match> mPreviousValueMatches = new HashMap<String, ValuePatternSet.Match>();
+    private long mReusedValueMatches;
+    private ValueConsensus mConsensus;                  // last readings, if options.consensusFrames
+    private String mLastReading;                        // value of the last reading ...
+    private int mLastReadingPattern;                    // ... and its pattern
+
+    public FieldEntry(MetaEngineController engine, String name, boolean mandatory, List<String> keywords,
+                      List<String> patterns, boolean attribute, MatchOptions options){
+        this.name = name;
+        this.mandatory = mandatory;
+        this.keywords = new ArrayList<String>(keywords);
+        mMetaEngine = engine;
+
+        if( mMetaEngine.hasPhoneticCodes() )
+            keywordCodes = new ArrayList<DaitchMokotoffCodes>();
+
+        keywordPhonetics = new ArrayList<String>();
+        keywordKeys = new long[keywords.size()];
+        keywordWordCounts = new int[keywordKeys.length];
+        for (int i = 0; i < keywords.size(); i++) {
+            String keyword = keywords.get(i);
+            keywordPhonetics.add(mMetaEngine.getPhoneticText(keyword));
+            keywordKeys[i] = mMetaEngine.getPhoneticKey(keyword);
+            keywordWordCounts[i] = keyword.split(" ").length;
+
+            if( keywordCodes != null )
+                keywordCodes.add(mMetaEngine.getPhoneticCodes(keyword, new DaitchMokotoffCodes()));
+        }
+
+        this.patterns = patterns != null && !patterns.isEmpty() ? patterns : null;
+        if( this.patterns != null ) {
+            mValuePatterns = new ValuePatternSet(this.patterns, options.linearValuePatterns,
+                    options.linearValuePatterns ? options.valuePatternTimeLimit : 0);
+            if( options.linearValuePatterns ) EngineLog.d(TAG, "value patterns of " + name + ": " + mValuePatterns);
+        }
+
+        this.attribute = attribute;
+        if( attribute ) {
+            mAttributeMatcher = new AttributeKeywordMatcher();
+            addKeywordsTo(mAttributeMatcher, 0);
+            mAttributeMatcher.build();
+        }
+
+        if( options.consensusFrames > 0 ) mConsensus = new ValueConsensus(options.consensusFrames);
+
+        resKeyword = "";
+        resValue = "";
+        indexOfPattern = -1;
+    }
+
+    public boolean hasPatterns(){
+        return patterns!=null && patterns.size()>0;
+    }
+
+    /**
+     * The phonetic text of keyword number index.
+     */
+    public String getPhoneticKeyword(int index){
+        return keywordPhonetics.get(index);
+    }
+
+    /**
+     * Match counts of the value patterns, including how many texts the
+     * prefilter rejected without regex work.
+     */
+    public String getValuePatternStats(){
+        return mValuePatterns != null ? mValuePatterns + " reused=" + mReusedValueMatches : "";
+    }
+
+    /**
+     * Starts the next frame. The pattern results of the texts of this frame
+     * are kept for the next one, those of older frames are dropped.
+     */
+    public void startFrame(){
+        HashMap<String, ValuePatternSet.Match> matches = mPreviousValueMatches;
+        mPreviousValueMatches = mValueMatches;
+        mValueMatches = matches;
+        mValueMatches.clear();
+    }
+
+    public String getDisplayValue() {
+        return resValue.isEmpty() ? DEFAULT_VALUE : resValue;
+    }
+
+    public String getDisplayString(){
+        String result = name + ":" + getDisplayValue();
+        result += "/" + resKeyword + "/" + (indexOfPattern + 1);
+
+        return result;
+    }
+
+    public boolean isSetValue(){
+        return !resValue.isEmpty();
+    }
+
+    /**
+     * Whether the value is voted from the last readings.
+     */
+    public boolean hasConsensus(){
+        return mConsensus != null;
+    }
+
+    /**
+     * The share of the last readings agreeing on the value, 0 without
+     * consensus.
+     */
+    public float getConfidence(){
+        return mConsensus != null ? mConsensus.getConfidence() : 0;
+    }
+
+    /**
+     * Votes again for the value of the last reading, read again from the
+     * same line.
+     *
+     * @return whether the value changed
+     */
+    public boolean repeatLastReading(){
+        if( mConsensus == null || mLastReading == null ) return false;
+        return acceptReading(mLastReading, mLastReadingPattern);
+    }
+
+    /**
+     * Votes for a value read, and takes the winner as the value.
+     */
+    private boolean acceptReading(String value, int pattern){
+        mLastReading = value;
+        mLastReadingPattern = pattern;
+        mConsensus.add(value, pattern);
+        if( mConsensus.getValue().equals(resValue) ) return false;
+
+        resValue = mConsensus.getValue();
+        indexOfPattern = mConsensus.getPattern();
+        return true;
+    }
+
+    public int getIndexKeywords(String string){
+        return getIndexKeywords(new PhoneticLineIndex(string));
+    }
+
+    /**
+     * Adds the phonetic keys of the keywords to the index, as entry number
+     * entry. Attribute entries match by text and are not added.
+     */
+    public void addKeywordsTo(PhoneticKeyIndex index, int entry){
+        if( attribute ) return;
+
+        for( int i=0; i<keywords.size(); i++ ){
+            if( keywordCodes != null )
+                index.add(keywordCodes.get(i), keywordWordCounts[i], entry, i);
+            else
+                index.add(keywordKeys[i], keywordWordCounts[i], entry, i);
+        }
+    }
+
+    /**
+     * Adds the keywords of an attribute entry to the matcher, as entry
+     * number entry. Other entries match phonetically and are not added.
+     */
+    public void addKeywordsTo(AttributeKeywordMatcher matcher, int entry){
+        if( !attribute ) return;
+
+        for( int i=0; i<keywords.size(); i++ ){
+            matcher.add(keywords.get(i), entry, i);
+        }
+    }
+
+    /**
+     * Same as {@link #getIndexKeywords(String)} for an indexed line, which
+     * shares the phonetic codes of the line with other dictionary entries.
+     */
+    public int getIndexKeywords(PhoneticLineIndex line){
+        if( attribute ) {
+            mAttributeMatcher.match(line.getText(), mAttributeMatch);
+            return mAttributeMatch[0];
+        }
+
+        for(int i=0; i<keywords.size(); i++){
+            if (matchMetaPhonetic(i, line))
+                return i;
+        }
+        return -1;
+    }
+
+    private boolean matchMetaPhonetic(int index, PhoneticLineIndex line) {
+        int wordCount = keywordWordCounts[index];
+        if( line.getWordCount() < wordCount ) return false;
+
+        if( keywordCodes != null )
+            return line.getPhoneticCodes(mMetaEngine, wordCount).intersects(keywordCodes.get(index));
+
+        return line.getPhoneticKey(mMetaEngine, wordCount) == keywordKeys[index];
+    }
+
+    public Map<String, Object> checkMatchValuePattern(String string){
+        if( string==null || string.isEmpty() ) return null;
+        if( patterns == null) return null;
+
+        ValuePatternSet.Match match = matchValuePatterns(string);
+        if( match == null ) return null;
+
+        final HashMap<String, Object> resultMap = new HashMap<String, Object>();
+        resultMap.put("result_value", match.value);
+        resultMap.put("pattern_num", match.patternIndex);
+        return resultMap;
+    }
+
+    /**
+     * The value found by the patterns in the string, the whole string if
+     * there are no patterns. The results of the strings of this and the
+     * previous frame are kept: setValueIfAcceptable() usually follows
+     * checkMatchValuePattern() on the same string, and lines that did not
+     * change give the same strings in the next frame.
+     */
+    private ValuePatternSet.Match matchValuePatterns(String string){
+        if( !hasPatterns() ) return new ValuePatternSet.Match(string, -1);
+
+        if( mValueMatches.containsKey(string) ) return mValueMatches.get(string);
+
+        ValuePatternSet.Match match;
+        if( mPreviousValueMatches.containsKey(string) ){
+            match = mPreviousValueMatches.get(string);
+            mReusedValueMatches++;
+        } else {
+            match = mValuePatterns.match(string);
+        }
+        mValueMatches.put(string, match);
+        return match;
+    }
+
+    public boolean setValueIfAcceptable(String string){
+        if( attribute ) {
+            if( string!=null && !string.isEmpty() ) {
+                if( mConsensus != null ) return acceptReading(string, -1);
+                if (resValue.isEmpty()) {
+                    resValue = string;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        if( string==null || string.isEmpty() || patterns == null ) return false;
+
+        ValuePatternSet.Match match = matchValuePatterns(string);
+        if( match == null) return false;
+
+        String value = match.value;
+        int num = match.patternIndex;
+
+        if( mConsensus != null ) return acceptReading(value, num);
+
+        if( isSetValue() ){
+            if( value.length() > resValue.length() ){
+                resValue = value;
+                indexOfPattern = num;
+                return true;
+            }
+        } else {
+            resValue = value;
+            indexOfPattern = num;
+            return true;
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,578 @@
+package com.creative.informatics.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the keywords and values of the dictionary fields in the lines of
+ * frame after frame.
+ *
+ * The lines are those of a {@link LineTable}, so the extractor needs nothing
+ * of the platform: the caller starts a frame, fills the table with the lines
+ * the text detector found, and extracts. The values go to the
+ * {@link FieldEntry} of each field; where they were found is left in its
+ * {@link Field} until the next frame.
+ *
+ * An instance is used by one thread, frame after frame; with
+ * options.extractionThreads it hands fields to threads of its own.
+ *
+ * @param <T> the line objects of the table
+ */
+public final class FieldExtractor<T> {
+    private static final String TAG = FieldExtractor.class.getSimpleName();
+    private static final int MIN_PARALLEL_FIELDS = 4;   // fewer fields are not worth handing to other threads
+    private static final Pattern ADDRESS_SEPARATORS = Pattern.compile("[,.\\s]+");
+    private static final Pattern NUMBERS_LINE = Pattern.compile("^[0-9,.$\\s]+$");
+    private static final Pattern ADDRESS_LINE = Pattern.compile("(?i:^[a-z0-9,.\\s]+$)");
+
+    private final Field[] mFields;
+    private final PhoneticKeyIndex mKeywordIndex;       // phonetic keywords of the non attribute entries
+    private final AttributeKeywordMatcher mAttributeMatcher;    // keywords of the attribute entries
+    private final float mStableConfidence;
+    private final LineTable<T> mLines = new LineTable<T>();     // lines of the current frame
+    private final LineLayout mLayout = new LineLayout();        // neighbours in mLines
+    private final FrameDiff mDiff = new FrameDiff();            // lines of the previous frame
+    private final LineTracker mTracker = new LineTracker();     // track ids of mLines
+    private long mCarriedBindings;
+    private final ExecutorService mExecutor;            // extracts values besides the calling thread, null if it does all
+    private final int mThreads;
+    private final long mFrameBudget;                    // ns for matching a frame, 0 if unlimited
+    private long mFrameStart;
+    private long mFrames;
+    private long mFrameTime;
+    private long mMaxFrameTime;
+    private long mOverrunFrames;
+    private long mRolledOverFrames;
+    private long mRolledOverFields;
+    private final PhoneticLineIndex mLineIndex = new PhoneticLineIndex();
+    private final int[] mKeywordMatches;
+    private final int[] mAttributeMatches;
+    private final PostalCodeRules mPostalRules;         // of options.country, null if none
+
+    /**
+     * @param entries the fields; entry number i is entry i of the keyword
+     *                index and of the attribute matcher
+     */
+    public FieldExtractor(List<? extends FieldEntry> entries, PhoneticKeyIndex keywordIndex,
+                          AttributeKeywordMatcher attributeMatcher, MatchOptions options){
+        mFields = new Field[entries.size()];
+        for( int i=0; i<mFields.length; i++ ) mFields[i] = new Field(entries.get(i));
+        mKeywordIndex = keywordIndex;
+        mAttributeMatcher = attributeMatcher;
+        mKeywordMatches = new int[mFields.length];
+        mAttributeMatches = new int[mFields.length];
+        mStableConfidence = options.consensusThreshold;
+
+        mPostalRules = PostalCodeRules.forCountry(options.country, options.postalCodes);
+        EngineLog.d(TAG, "postal code rules: " + mPostalRules);
+
+        mThreads = Math.max(1, Math.min(options.extractionThreads, Runtime.getRuntime().availableProcessors()));
+        mExecutor = mThreads > 1 ? Executors.newFixedThreadPool(mThreads - 1, new ThreadFactory() {
+            private int mCount;
+
+            @Override
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ocr-extract-" + (++mCount));
+                thread.setDaemon(true);
+                return thread;
+            }
+        }) : null;
+        EngineLog.d(TAG, "extraction threads: " + mThreads);
+
+        mFrameBudget = Math.max(0, options.frameTimeBudget) * 1000000L;
+    }
+
+    /**
+     * Starts the next frame, whose time budget runs from now on.
+     *
+     * @return the table to add the lines of the frame to, empty
+     */
+    public LineTable<T> startFrame(){
+        mFrameStart = System.nanoTime();
+        for( Field field : mFields ){
+            field.mSelected = false;
+            field.mKeywordLine = -1;
+            field.mKeywordTracked = false;
+            field.mValueLine = -1;
+            field.mCarried = false;
+            field.entry.startFrame();
+        }
+        mLines.clear();
+        return mLines;
+    }
+
+    /**
+     * Finds the keywords and values of the fields in the lines added since
+     * {@link #startFrame()}.
+     */
+    public void extract(){
+        mLayout.build(mLines);
+        mDiff.startFrame(mLines);
+        mTracker.update(mLines);
+
+        find_keyword();
+        find_value();
+        keep_bindings();
+        count_frame();
+    }
+
+    public LineTable<T> getLines(){
+        return mLines;
+    }
+
+    public int getFieldCount(){
+        return mFields.length;
+    }
+
+    public Field getField(int index){
+        return mFields[index];
+    }
+
+    /**
+     * Whether every mandatory entry, and at least one entry, has a value
+     * voted with options.consensusThreshold confidence.
+     */
+    public boolean isStable(){
+        boolean any = false;
+        for( Field field : mFields ){
+            if( !field.entry.hasConsensus() ) return false;
+
+            boolean stable = field.entry.isSetValue() && field.entry.getConfidence() >= mStableConfidence;
+            if( field.entry.mandatory && !stable ) return false;
+            any |= stable;
+        }
+        return any;
+    }
+
+    private boolean checkServiceAddressEx(){
+        for( Field info : mFields) {
+            if ( !info.entry.name.toLowerCase().contains("service address")) continue;
+
+            // Service Address without keyword
+            if( !info.entry.resKeyword.isEmpty() ) break;
+
+            if (info.mIndexOfKey >= 0){
+                info.entry.resValue = "";
+                break;
+            }
+            if (info.mKeywordLine >= 0) break;
+
+            if( mPostalRules == null ) return false;
+
+            // the first line with the first rule, in one pass over the lines
+            int secAddrLine = -1;
+            int rule = mPostalRules.size();
+            for (int i=0; i<mLines.size() && rule>0; i++) {
+                int found = mDiff.getPostalRule(i);
+                if( found == FrameDiff.UNKNOWN ) {
+                    found = mPostalRules.find(mLines.getValue(i));
+                    mDiff.setPostalRule(i, found);
+                }
+                if( found >= 0 && found < rule ) {
+                    secAddrLine = i;
+                    rule = found;
+                }
+            }
+            if( secAddrLine < 0 ) return false;
+
+            String addressValue = mLines.getValue(secAddrLine);
+            StringBuilder builder = new StringBuilder();
+
+            String test = ADDRESS_SEPARATORS.matcher(addressValue).replaceAll(",");
+            if( test.split(",").length < 5 ) {
+                // the lowest line above it
+                int firstAddressLine = mLayout.getAbove(secAddrLine);
+                if( firstAddressLine >= 0 ){
+                    String firstAddress = mLines.getValue(firstAddressLine);
+                    if (NUMBERS_LINE.matcher(firstAddress).matches()) {
+                        EngineLog.e(TAG, "checkServiceAddressEx: First address line is not matched:" + firstAddress );
+                    } else if (ADDRESS_LINE.matcher(firstAddress).matches()) {
+                        builder.append(firstAddress).append(", ");
+                    }
+                }
+            }
+            addressValue = builder.append(addressValue).toString();
+
+            if( info.entry.checkMatchValuePattern(addressValue) != null) {
+                info.mValueLine = secAddrLine;
+
+                if (info.entry.setValueIfAcceptable(addressValue)) {
+                    info.mSelected = true;
+                    EngineLog.d(TAG, "find_value_in_text: a new Value:" + info.entry.getDisplayString());
+                }
+                return true;
+            }
+            return false;
+        }
+        return false;
+    }
+
+    private void find_keyword(){
+
+        for( int i=0; i<mLines.size(); i++ ){
+            // lines of the previous frame have the same matches
+            if( !mDiff.reuseMatches(i) ) {
+                mLineIndex.set(mLines.getValue(i));
+                mKeywordIndex.match(mLineIndex, mKeywordMatches);
+                mAttributeMatcher.match(mLineIndex.getText(), mAttributeMatches);
+                for (int k=0; k<mFields.length; k++) {
+                    int inxKey = mFields[k].entry.attribute ? mAttributeMatches[k] : mKeywordMatches[k];
+                    if (inxKey > -1) mDiff.addMatch(k, inxKey);
+                }
+            }
+
+            for( int m=mDiff.getMatchStart(i); m<mDiff.getMatchEnd(i); m++ ){
+                Field info = mFields[mDiff.getMatchEntry(m)];
+                // the line of the track bound to the entry stays its keyword
+                boolean tracked = info.mKeywordTrack != 0 && mTracker.getTrack(i) == info.mKeywordTrack;
+                if( info.mKeywordTracked && !tracked ) continue;
+
+                info.mKeywordTracked = tracked;
+                info.mIndexOfKey = mDiff.getMatchKeyword(m);
+                info.mKeywordLine = i;
+            }
+        }
+    }
+
+    private void find_value() {
+
+        if( checkServiceAddressEx() ) {
+            EngineLog.d(TAG, "find_keyword: Detected Service address from Country name");
+        }
+        // the fields with a keyword, most urgent first
+        final List<Field> infos = new ArrayList<Field>(mFields.length);
+        for (Field info : mFields) {
+            if( info.mKeywordLine >= 0 ) infos.add(info);
+            else info.mRolledOver = false;
+        }
+        Collections.sort(infos, new Comparator<Field>() {
+            @Override
+            public int compare(Field o1, Field o2) {
+                return o1.getPriority() - o2.getPriority();
+            }
+        });
+
+        if( mExecutor == null || infos.size() < MIN_PARALLEL_FIELDS ) {
+            for( int i=0; i<infos.size(); i++ ) find_value_before_deadline(infos.get(i), i == 0);
+            return;
+        }
+
+        // the fields only share the frame, which is not changed any more once
+        // the lower-cased keyword lines are there
+        for (Field info : infos) mLines.getLowerValue(info.mKeywordLine);
+
+        // every thread takes every mThreads-th field, this one the first ones
+        List<Future<?>> futures = new ArrayList<Future<?>>(mThreads - 1);
+        for( int t=1; t<mThreads; t++ ){
+            final int first = t;
+            futures.add(mExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for( int i=first; i<infos.size(); i+=mThreads ) find_value_before_deadline(infos.get(i), i == first);
+                }
+            }));
+        }
+        for( int i=0; i<infos.size(); i+=mThreads ) find_value_before_deadline(infos.get(i), i == 0);
+
+        // the fields must be complete before the frame is used, even if interrupted
+        boolean interrupted = false;
+        Throwable failure = null;
+        for( Future<?> future : futures ){
+            while( true ) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    EngineLog.e(TAG, "find_value: a worker thread failed: " + e.getCause());
+                    if( failure == null ) failure = e.getCause();
+                    break;
+                }
+            }
+        }
+        if( interrupted ) Thread.currentThread().interrupt();
+
+        if( failure instanceof RuntimeException ) throw (RuntimeException) failure;
+        if( failure instanceof Error ) throw (Error) failure;
+        if( failure != null ) throw new RuntimeException(failure);
+    }
+
+    /**
+     * Finds the value of one field with a keyword, or leaves it for the next
+     * frame if the time budget of this frame is spent. The first field of
+     * each thread is always searched, so that every frame makes progress even
+     * when finding the keywords alone took the whole budget.
+     */
+    private void find_value_before_deadline(Field info, boolean first) {
+        if( !first && mFrameBudget > 0 && System.nanoTime() - mFrameStart > mFrameBudget ) {
+            info.mRolledOver = true;
+            return;
+        }
+        find_value(info);
+        info.mRolledOver = false;
+    }
+
+    /**
+     * Finds the value of one field with a keyword. Only the entry of the
+     * field is changed, so fields may be searched by several threads.
+     */
+    private void find_value(Field info) {
+
+        if( check_attribute(info) ) return;
+
+        if( carry_value(info) ) return;
+
+        if( find_value_in_text(info) ) return;
+
+        if( find_value_in_right(info) ) return;
+
+        if( find_value_in_below(info) ) return;
+
+        String key = info.entry.keywords.get(info.mIndexOfKey);
+        String phonetic = info.entry.getPhoneticKeyword(info.mIndexOfKey);
+        EngineLog.e(TAG, "find_value: no find value >> keyword : " + key
+                + ", phonetic: " + phonetic);
+    }
+
+    /**
+     * Keeps the value line of the previous frame if the keyword line and it
+     * are tracked and did not change.
+     */
+    private boolean carry_value(Field info){
+        if( !info.mKeywordTracked || mTracker.isChanged(info.mKeywordLine) ) return false;
+        if( info.mValueTrack == 0 ) return false;
+
+        int line = mTracker.getLine(info.mValueTrack);
+        if( line < 0 || mTracker.isChanged(line) ) return false;
+
+        info.mValueLine = line;
+        info.mCarried = true;
+
+        // the same reading as in the previous frame, which counts for the consensus
+        if( info.entry.repeatLastReading() ) {
+            info.mSelected = true;
+            EngineLog.d(TAG, "carry_value: " + info.entry.getDisplayString());
+        }
+        return true;
+    }
+
+    /**
+     * Binds the entries to the tracks of their keyword and value lines, for
+     * the next frame.
+     */
+    private void keep_bindings(){
+        for( Field info : mFields ){
+            if( info.mRolledOver ) continue;   // still bound as in the frame its value was searched in
+            info.mKeywordTrack = info.mKeywordLine >= 0 ? mTracker.getTrack(info.mKeywordLine) : 0;
+            info.mValueTrack = info.mValueLine >= 0 ? mTracker.getTrack(info.mValueLine) : 0;
+            if( info.mCarried ) mCarriedBindings++;
+        }
+    }
+
+    private void count_frame(){
+        long time = System.nanoTime() - mFrameStart;
+        int rolledOver = 0;
+        for( Field info : mFields ){
+            if( info.mRolledOver ) rolledOver++;
+        }
+
+        mFrames++;
+        mFrameTime += time;
+        mMaxFrameTime = Math.max(mMaxFrameTime, time);
+        if( mFrameBudget > 0 && time > mFrameBudget ) mOverrunFrames++;
+        if( rolledOver > 0 ) {
+            mRolledOverFrames++;
+            mRolledOverFields += rolledOver;
+        }
+    }
+
+    private boolean check_attribute(Field info){
+        if( !info.entry.attribute ) return false;
+        if( info.mKeywordLine < 0 ) return false;
+
+        String key = info.entry.keywords.get(info.mIndexOfKey);
+        int offset = mLines.getLowerValue(info.mKeywordLine).indexOf(key.toLowerCase());
+        if( offset < 0) return false;
+
+        if( info.entry.setValueIfAcceptable(key) ) {
+            info.mSelected = true;
+            info.entry.resKeyword = key;
+            EngineLog.d(TAG, "check_attribute: A new Value:" + info.entry.getDisplayString());
+        }
+        return true;
+    }
+
+    private boolean find_value_in_text(Field info){
+        if( info.mKeywordLine < 0 ) return false;
+
+        int keyword = info.mKeywordLine;
+        for(String key : info.entry.keywords){
+            int offset = mLines.getLowerValue(keyword).indexOf(key.toLowerCase());
+            if( offset < 0) continue;
+            String value = mLines.getValue(keyword).substring(offset + key.length()).trim();
+
+            if( info.entry.checkMatchValuePattern(value) != null) {
+                info.mValueLine = keyword;
+
+                if (info.entry.setValueIfAcceptable(value)) {
+                    info.mSelected = true;
+                    info.entry.resKeyword = info.entry.keywords.get(info.mIndexOfKey);
+                    EngineLog.d(TAG, "find_value_in_text: A new Value:" + info.entry.getDisplayString());
+                }
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean find_value_in_right(Field info){
+        if( info.mKeywordLine < 0 ) return false;
+
+        // the leftmost line right of the keyword and on its level, the first one of equal ones
+        int found = mLayout.getRight(info.mKeywordLine);
+
+        if( found < 0 ) return false;
+
+        String value = mLines.getValue(found);
+        if( info.entry.checkMatchValuePattern(value) != null) {
+            info.mValueLine = found;
+            if( info.mIndexOfKey < 0) info.entry.resValue="";
+
+            if (info.entry.setValueIfAcceptable(value)) {
+                info.mSelected = true;
+                info.entry.resKeyword = info.entry.keywords.get(info.mIndexOfKey);
+                EngineLog.d(TAG, "find_value_in_right: " + info.entry.getDisplayString());
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private boolean find_value_in_below(Field info){
+        if( info.mKeywordLine < 0 ) return false;
+        if( !info.entry.hasPatterns() ) return false;
+
+        // first among the lines of the keyword's block, then among all lines
+        int found = mLayout.getBelow(info.mKeywordLine);
+
+        if( found < 0 ) return false;
+
+        String value = mLines.getValue(found);
+        if( info.entry.checkMatchValuePattern(value) != null) {
+            info.mValueLine = found;
+            if( info.mIndexOfKey < 0) info.entry.resValue="";
+
+            if (info.entry.setValueIfAcceptable(value)) {
+                info.mSelected = true;
+                info.entry.resKeyword = info.entry.keywords.get(info.mIndexOfKey);
+                EngineLog.d(TAG, "find_value_in_below: " + info.entry.getDisplayString());
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Counts of the lines found in the previous frame and of the matching
+     * skipped for them.
+     */
+    public String getFrameDiffStats(){
+        return mDiff.toString();
+    }
+
+    /**
+     * Counts of the tracked lines and of the value lines kept from the
+     * previous frame.
+     */
+    public String getTrackingStats(){
+        return mTracker + " carriedBindings=" + mCarriedBindings;
+    }
+
+    /**
+     * Frame times up to the value extraction, and the frames and fields
+     * that missed the frame time budget.
+     */
+    public String getSchedulerStats(){
+        return "frames=" + mFrames + " budget=" + mFrameBudget / 1000000 + "ms"
+                + " avg=" + (mFrames > 0 ? mFrameTime / mFrames / 1000 : 0) + "us"
+                + " max=" + mMaxFrameTime / 1000 + "us"
+                + " overruns=" + mOverrunFrames
+                + " rolledOverFrames=" + mRolledOverFrames + " rolledOverFields=" + mRolledOverFields;
+    }
+
+    /**
+     * Stops the threads of the extractor.
+     */
+    public void release(){
+        if( mExecutor != null ) mExecutor.shutdown();
+    }
+
+    /**
+     * A field in the current frame: where its keyword and value were found,
+     * and its bindings to the tracks of the previous frame.
+     */
+    public static final class Field {
+        public final FieldEntry entry;
+
+        private boolean mSelected;
+        private int mIndexOfKey = -1;
+        private int mKeywordLine = -1;      // index of the keyword line in the table
+        private boolean mKeywordTracked;    // whether it is the line of mKeywordTrack
+        private int mKeywordTrack;          // track of the keyword line of the previous frame, 0 if none
+        private int mValueLine = -1;        // index of the value line in the table
+        private int mValueTrack;            // track of the value line of the previous frame, 0 if none
+        private boolean mCarried;           // whether the value line was kept from the previous frame
+        private boolean mRolledOver;        // whether the value was not searched for lack of time
+
+        Field(FieldEntry entry){
+            this.entry = entry;
+        }
+
+        /**
+         * Fields left over from the previous frame first, then mandatory
+         * fields, fields without a value and fields with one.
+         */
+        private int getPriority(){
+            int priority = entry.mandatory ? 0 : !entry.isSetValue() ? 1 : 2;
+            return mRolledOver ? priority : priority + 3;
+        }
+
+        /**
+         * Whether the value of the entry was set in this frame.
+         */
+        public boolean isSelected(){
+            return mSelected;
+        }
+
+        /**
+         * The line the keyword was found in, -1 if none.
+         */
+        public int getKeywordLine(){
+            return mKeywordLine;
+        }
+
+        /**
+         * The line the value was found in, -1 if none.
+         */
+        public int getValueLine(){
+            return mValueLine;
+        }
+
+        /**
+         * Whether the value was left for the next frame for lack of time.
+         */
+        public boolean isRolledOver(){
+            return mRolledOver;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.creative.informatics.core;
+
+import java.util.Arrays;
+
+/**
+ * The lines of the previous frame and what matching found in them, so that
+ * lines seen again in the next frame need not be matched again.
+ *
+ * Keyword matches and the postal code rule of a line depend only on its
+ * text, so they are taken over from a previous line with the same text,
+ * wherever it is now. A line is counted as unchanged if its box is the same
+ * too. Lines are looked up by the hash of their text in an open addressing
+ * table of the previous frame.
+ *
+ * The matchers must not change between frames; call {@link #clear()} when
+ * they do. An instance is reused for frame after frame and is not thread
+ * safe.
+ */
+public final class FrameDiff {
+    /** Postal code rule of a line that was not searched. */
+    public static final int UNKNOWN = -2;
+
+    private Frame mCurrent = new Frame();
+    private Frame mPrevious = new Frame();
+    private int[] mSlots = new int[128];            // previous line + 1 by hash of its text, 0 if empty
+    private int[] mSame = new int[64];              // previous line with the same text, -1 if none
+    private int mLine = -1;                         // line whose matches are being added
+
+    private long mFrames;
+    private long mLines;
+    private long mUnchangedLines;
+    private long mReusedMatches;
+    private long mReusedRules;
+
+    private static final class Frame {
+        int size;
+        String[] values = new String[64];
+        int[] boxes = new int[256];                 // left, top, right, bottom of each line
+        int[] matchStarts = new int[65];            // matches of line i are [matchStarts[i], matchStarts[i+1])
+        int matchCount;
+        boolean matched;                            // whether the matches of all lines were added
+        int[] entries = new int[64];
+        int[] keywords = new int[64];
+        int[] rules = new int[64];
+
+        void set(LineTable<?> lines){
+            size = lines.size();
+            if( values.length < size ){
+                int capacity = Math.max(size, values.length * 2);
+                values = new String[capacity];
+                boxes = new int[capacity * 4];
+                matchStarts = new int[capacity + 1];
+                rules = new int[capacity];
+            }
+            for( int i=0; i<size; i++ ){
+                values[i] = lines.getValue(i);
+                boxes[i * 4] = lines.getLeft(i);
+                boxes[i * 4 + 1] = lines.getTop(i);
+                boxes[i * 4 + 2] = lines.getRight(i);
+                boxes[i * 4 + 3] = lines.getBottom(i);
+            }
+            Arrays.fill(values, size, values.length, null);
+            Arrays.fill(rules, 0, size, UNKNOWN);
+            matchCount = 0;
+        }
+
+        void addMatch(int entry, int keyword){
+            if( matchCount == entries.length ){
+                entries = Arrays.copyOf(entries, matchCount * 2);
+                keywords = Arrays.copyOf(keywords, matchCount * 2);
+            }
+            entries[matchCount] = entry;
+            keywords[matchCount] = keyword;
+            matchCount++;
+        }
+    }
+
+    /**
+     * Starts the next frame: finds the lines of the table that were in the
+     * previous one. The table must be complete.
+     */
+    public void startFrame(LineTable<?> lines){
+        mCurrent.matched = mLine == mCurrent.size - 1;
+        Frame frame = mPrevious;
+        mPrevious = mCurrent;
+        mCurrent = frame;
+        mCurrent.set(lines);
+        mLine = -1;
+        mFrames++;
+        mLines += mCurrent.size;
+
+        int size = mCurrent.size;
+        if( mSame.length < size ) mSame = new int[Math.max(size, mSame.length * 2)];
+        if( mPrevious.size == 0 ){
+            Arrays.fill(mSame, 0, size, -1);
+            return;
+        }
+
+        int mask = buildSlots();
+        for( int i=0; i<size; i++ ){
+            String value = mCurrent.values[i];
+            int same = -1;
+            for( int s=hash(value) & mask; mSlots[s] != 0; s=(s + 1) & mask ){
+                int p = mSlots[s] - 1;
+                if( value.equals(mPrevious.values[p]) ){
+                    same = p;
+                    break;
+                }
+            }
+            mSame[i] = same;
+            if( same >= 0 && isSameBox(i, same) ) mUnchangedLines++;
+        }
+    }
+
+    private int buildSlots(){
+        int capacity = Integer.highestOneBit(Math.max(mPrevious.size * 2 - 1, 1)) * 2;
+        if( mSlots.length < capacity ) mSlots = new int[capacity];
+        int mask = mSlots.length - 1;
+        Arrays.fill(mSlots, 0);
+
+        // lines with the same text have the same results, the first one is kept
+        for( int p=0; p<mPrevious.size; p++ ){
+            String value = mPrevious.values[p];
+            int s = hash(value) & mask;
+            while( mSlots[s] != 0 && !value.equals(mPrevious.values[mSlots[s] - 1]) ) s = (s + 1) & mask;
+            if( mSlots[s] == 0 ) mSlots[s] = p + 1;
+        }
+        return mask;
+    }
+
+    private static int hash(String value){
+        int h = value.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private boolean isSameBox(int line, int previous){
+        for( int k=0; k<4; k++ ){
+            if( mCurrent.boxes[line * 4 + k] != mPrevious.boxes[previous * 4 + k] ) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Drops the previous frame, e.g. after the matchers changed.
+     */
+    public void clear(){
+        mCurrent.size = 0;
+        mPrevious.size = 0;
+        mPrevious.matched = false;
+        mLine = -1;
+    }
+
+    /**
+     * Starts the keyword matches of the next line; lines go in table order.
+     * Takes over the matches of the previous frame if the line was in it.
+     *
+     * @return true if the matches were taken over, false if they must be
+     * added with {@link #addMatch(int, int)}
+     */
+    public boolean reuseMatches(int line){
+        if( line != mLine + 1 ) throw new IllegalStateException("line " + line + " after " + mLine);
+        mLine = line;
+        mCurrent.matchStarts[line] = mCurrent.matchCount;
+        mCurrent.matchStarts[line + 1] = mCurrent.matchCount;
+
+        int same = mSame[line];
+        if( same < 0 || !mPrevious.matched ) return false;
+
+        for( int m=mPrevious.matchStarts[same]; m<mPrevious.matchStarts[same + 1]; m++ ){
+            mCurrent.addMatch(mPrevious.entries[m], mPrevious.keywords[m]);
+        }
+        mCurrent.matchStarts[line + 1] = mCurrent.matchCount;
+        mReusedMatches++;
+        return true;
+    }
+
+    /**
+     * Adds a keyword match of the current line: keyword number keyword of
+     * dictionary entry number entry.
+     */
+    public void addMatch(int entry, int keyword){
+        mCurrent.addMatch(entry, keyword);
+        mCurrent.matchStarts[mLine + 1] = mCurrent.matchCount;
+    }
+
+    public int getMatchStart(int line){
+        return mCurrent.matchStarts[line];
+    }
+
+    public int getMatchEnd(int line){
+        return mCurrent.matchStarts[line + 1];
+    }
+
+    public int getMatchEntry(int match){
+        return mCurrent.entries[match];
+    }
+
+    public int getMatchKeyword(int match){
+        return mCurrent.keywords[match];
+    }
+
+    /**
+     * The postal code rule found in a line, from this or the previous frame;
+     * UNKNOWN if the line was not searched.
+     */
+    public int getPostalRule(int line){
+        if( mCurrent.rules[line] == UNKNOWN && mSame[line] >= 0 && mPrevious.rules[mSame[line]] != UNKNOWN ){
+            mCurrent.rules[line] = mPrevious.rules[mSame[line]];
+            mReusedRules++;
+        }
+        return mCurrent.rules[line];
+    }
+
+    public void setPostalRule(int line, int rule){
+        mCurrent.rules[line] = rule;
+    }
+
+    @Override
+    public String toString(){
+        return "frames=" + mFrames + " lines=" + mLines + " unchanged=" + mUnchangedLines
+                + " reusedKeywordMatches=" + mReusedMatches + " reusedPostalRules=" + mReusedRules;
+    }
+}
@@ -0,0 +1,226 @@
+package com.creative.informatics.core;
+
+import java.util.Arrays;
+
+/**
+ * Spatial index over the lines of a {@link LineTable}, answering the
+ * neighbour queries of the value search without scanning every line.
+ *
+ * Lines are kept sorted by top, so the lines on the row of a keyword are
+ * found by binary search, and bucketed into a uniform grid of about one line
+ * per cell, so the lines intersecting a rectangle are found among the few
+ * lines of the cells it covers. The answers are those of the linear scans
+ * they replace, including their tie breaking and the semantics of
+ * android.graphics.Rect.
+ *
+ * The index is rebuilt for every frame; queries do not modify it.
+ */
+public final class LineGrid {
+    private static final int SCAN_LINES = 32;       // ranges scanned rather than looked up
+
+    private LineTable<?> mLines;
+
+    private int mSize;
+    private long[] mByTop = new long[64];           // top << 32 | line, ascending
+
+    private int mMinX, mMinY;
+    private long mCellWidth, mCellHeight;
+    private int mColumns, mRows;
+    private int[] mCellStarts = new int[65];        // lines of cell c are mCellLines[mCellStarts[c]..mCellStarts[c+1])
+    private int[] mCellLines = new int[64];
+    private int[] mNext = new int[64];
+    private int[] mCells = new int[256];            // first column, last column, first row, last row of each line
+
+    /**
+     * Indexes the lines of a table; must be called again whenever it changes.
+     */
+    public void build(LineTable<?> lines){
+        mLines = lines;
+        mSize = lines.size();
+
+        if( mByTop.length < mSize ) mByTop = new long[Math.max(mSize, mByTop.length * 2)];
+        for( int i=0; i<mSize; i++ ) mByTop[i] = ((long) lines.getTop(i) << 32) | i;
+        Arrays.sort(mByTop, 0, mSize);
+
+        buildGrid();
+    }
+
+    private void buildGrid(){
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for( int i=0; i<mSize; i++ ){
+            minX = Math.min(minX, Math.min(mLines.getLeft(i), mLines.getRight(i)));
+            maxX = Math.max(maxX, Math.max(mLines.getLeft(i), mLines.getRight(i)));
+            minY = Math.min(minY, Math.min(mLines.getTop(i), mLines.getBottom(i)));
+            maxY = Math.max(maxY, Math.max(mLines.getTop(i), mLines.getBottom(i)));
+        }
+        mColumns = mRows = Math.max(1, (int) Math.sqrt(mSize));
+        mMinX = minX;
+        mMinY = minY;
+        mCellWidth = mSize == 0 ? 1 : ((long) maxX - minX) / mColumns + 1;
+        mCellHeight = mSize == 0 ? 1 : ((long) maxY - minY) / mRows + 1;
+
+        int cells = mColumns * mRows;
+        if( mCellStarts.length < cells + 1 ) mCellStarts = new int[cells + 1];
+        Arrays.fill(mCellStarts, 0, cells + 1, 0);
+
+        // count the lines of each cell, then place them
+        if( mCells.length < mSize * 4 ) mCells = new int[Math.max(mSize * 4, mCells.length * 2)];
+        int entries = 0;
+        for( int i=0; i<mSize; i++ ){
+            int c0 = mCells[i * 4] = column(Math.min(mLines.getLeft(i), mLines.getRight(i)));
+            int c1 = mCells[i * 4 + 1] = column(Math.max(mLines.getLeft(i), mLines.getRight(i)));
+            int r0 = mCells[i * 4 + 2] = row(Math.min(mLines.getTop(i), mLines.getBottom(i)));
+            int r1 = mCells[i * 4 + 3] = row(Math.max(mLines.getTop(i), mLines.getBottom(i)));
+            for( int r=r0; r<=r1; r++ ){
+                for( int c=c0; c<=c1; c++ ) mCellStarts[r * mColumns + c + 1]++;
+            }
+            entries += (r1 - r0 + 1) * (c1 - c0 + 1);
+        }
+        for( int c=0; c<cells; c++ ) mCellStarts[c + 1] += mCellStarts[c];
+        if( mCellLines.length < entries ) mCellLines = new int[Math.max(entries, mCellLines.length * 2)];
+
+        if( mNext.length < cells ) mNext = new int[cells];
+        System.arraycopy(mCellStarts, 0, mNext, 0, cells);
+        for( int i=0; i<mSize; i++ ){
+            int c0 = mCells[i * 4], c1 = mCells[i * 4 + 1];
+            int r0 = mCells[i * 4 + 2], r1 = mCells[i * 4 + 3];
+            for( int r=r0; r<=r1; r++ ){
+                for( int c=c0; c<=c1; c++ ) mCellLines[mNext[r * mColumns + c]++] = i;
+            }
+        }
+    }
+
+    private int column(int x){
+        long c = ((long) x - mMinX) / mCellWidth;
+        return (int) Math.max(0, Math.min(mColumns - 1, c));
+    }
+
+    private int row(int y){
+        long r = ((long) y - mMinY) / mCellHeight;
+        return (int) Math.max(0, Math.min(mRows - 1, r));
+    }
+
+    /**
+     * The leftmost line starting right of a line and with a top at most
+     * maxOffset from its top, the first one in table order of equally left
+     * lines; -1 if none.
+     */
+    public int findRight(int line, int maxOffset){
+        long top = mLines.getTop(line);
+        int right = mLines.getRight(line);
+
+        int found = -1;
+        for( int k=lowerBound((top - maxOffset) << 32); k<mSize; k++ ){
+            if( (mByTop[k] >> 32) > top + maxOffset ) break;
+
+            int i = (int) mByTop[k];
+            if( right > mLines.getLeft(i) ) continue;
+            if( found < 0 || mLines.getLeft(i) < mLines.getLeft(found)
+                    || (mLines.getLeft(i) == mLines.getLeft(found) && i < found) ) found = i;
+        }
+        return found;
+    }
+
+    /**
+     * The lowest line starting above a line, the first one in table order of
+     * equally high lines; -1 if none.
+     */
+    public int findAbove(int line){
+        int k = lowerBound((long) mLines.getTop(line) << 32) - 1;
+        if( k < 0 ) return -1;
+        return (int) mByTop[lowerBound(mByTop[k] & 0xFFFFFFFF00000000L)];
+    }
+
+    private int lowerBound(long key){
+        int low = 0, high = mSize;
+        while( low < high ){
+            int mid = (low + high) >>> 1;
+            if( mByTop[mid] < key ) low = mid + 1; else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * The first line of [start, end) in table order whose top is at least
+     * the bottom of a line less maxOffset, that does not end left of it, and
+     * such that no other line of [start, end) intersects the union of the
+     * two; -1 if none.
+     */
+    public int findBelow(int line, int maxOffset, int start, int end){
+        // a line obstructing one candidate, e.g. the one right below the keyword, usually obstructs the next
+        int obstruction = -1;
+        for( int i=start; i<end; i++ ){
+            if( (mLines.getBottom(line) - maxOffset) > mLines.getTop(i) || mLines.getLeft(line) > mLines.getRight(i) ) continue;
+            obstruction = findObstruction(line, i, start, end, obstruction);
+            if( obstruction < 0 ) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * A line of [start, end) other than a and b that intersects the union of
+     * a and b, as Rect.intersects() with the Rect.union() of their boxes,
+     * trying line guess first; -1 if none.
+     */
+    private int findObstruction(int a, int b, int start, int end, int guess){
+        int left = mLines.getLeft(a), top = mLines.getTop(a);
+        int right = mLines.getRight(a), bottom = mLines.getBottom(a);
+        int c0 = mCells[a * 4], c1 = mCells[a * 4 + 1];
+        int r0 = mCells[a * 4 + 2], r1 = mCells[a * 4 + 3];
+        if( mLines.getLeft(b) < mLines.getRight(b) && mLines.getTop(b) < mLines.getBottom(b) ){
+            if( left < right && top < bottom ){
+                left = Math.min(left, mLines.getLeft(b));
+                top = Math.min(top, mLines.getTop(b));
+                right = Math.max(right, mLines.getRight(b));
+                bottom = Math.max(bottom, mLines.getBottom(b));
+                c0 = Math.min(c0, mCells[b * 4]);
+                c1 = Math.max(c1, mCells[b * 4 + 1]);
+                r0 = Math.min(r0, mCells[b * 4 + 2]);
+                r1 = Math.max(r1, mCells[b * 4 + 3]);
+            } else {
+                left = mLines.getLeft(b);
+                top = mLines.getTop(b);
+                right = mLines.getRight(b);
+                bottom = mLines.getBottom(b);
+                c0 = mCells[b * 4];
+                c1 = mCells[b * 4 + 1];
+                r0 = mCells[b * 4 + 2];
+                r1 = mCells[b * 4 + 3];
+            }
+        }
+
+        if( guess >= 0 && guess != b && intersects(guess, left, top, right, bottom) ) return guess;
+
+        if( end - start <= SCAN_LINES ){
+            for( int j=start; j<end; j++ ){
+                if( j != a && j != b && intersects(j, left, top, right, bottom) ) return j;
+            }
+            return -1;
+        }
+
+        // a line intersecting the union shares a cell with it, even if either box is inverted;
+        // the rows near b first, where an obstructing line usually is
+        for( int r=r1; r>=r0; r-- ){
+            for( int c=c0; c<=c1; c++ ){
+                int cell = r * mColumns + c;
+                for( int k=mCellStarts[cell]; k<mCellStarts[cell + 1]; k++ ){
+                    int j = mCellLines[k];
+                    if( j == a || j == b || j < start || j >= end ) continue;
+                    if( intersects(j, left, top, right, bottom) ) return j;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private boolean intersects(int line, int left, int top, int right, int bottom){
+        return left < mLines.getRight(line) && mLines.getLeft(line) < right
+                && top < mLines.getBottom(line) && mLines.getTop(line) < bottom;
+    }
+
+    @Override
+    public String toString(){
+        return "lines=" + mSize + " grid=" + mColumns + "x" + mRows + " entries=" + mCellStarts[mColumns * mRows];
+    }
+}
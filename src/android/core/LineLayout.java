@@ -0,0 +1,93 @@
+package com.creative.informatics.core;
+
+import java.util.Arrays;
+
+/**
+ * Layout of the lines of one frame, built once per frame and shared by all
+ * field extractors: the neighbour of every line to the right, below and
+ * above.
+ *
+ * Neighbour edges are looked up in a {@link LineGrid} when first asked for
+ * and then kept for the frame, so any number of fields can ask for the
+ * neighbours of a line.
+ *
+ * Once built, the layout may be read by several threads: an edge looked up
+ * by two of them at once is computed twice, with the same result.
+ */
+public final class LineLayout {
+    /** Largest difference of tops of a line and its right neighbour, in pixels. */
+    public static final int ROW_OFFSET = 10;
+
+    private static final int UNKNOWN = -2;
+
+    private final LineGrid mGrid = new LineGrid();
+    private LineTable<?> mLines;
+    private int mSize;
+
+    private int[] mRight = new int[64];
+    private int[] mBelow = new int[64];
+    private int[] mAbove = new int[64];
+
+    /**
+     * Lays out the lines of a table; must be called again whenever it changes.
+     */
+    public void build(LineTable<?> lines){
+        mLines = lines;
+        mSize = lines.size();
+        mGrid.build(lines);
+
+        if( mRight.length < mSize ){
+            int capacity = Math.max(mSize, mRight.length * 2);
+            mRight = new int[capacity];
+            mBelow = new int[capacity];
+            mAbove = new int[capacity];
+        }
+        Arrays.fill(mRight, 0, mSize, UNKNOWN);
+        Arrays.fill(mBelow, 0, mSize, UNKNOWN);
+        Arrays.fill(mAbove, 0, mSize, UNKNOWN);
+    }
+
+    public int size(){
+        return mSize;
+    }
+
+    /**
+     * The leftmost line right of a line with its top at most ROW_OFFSET from
+     * the line's, the first one in table order of equally left lines; -1 if
+     * none.
+     */
+    public int getRight(int line){
+        if( mRight[line] == UNKNOWN ) mRight[line] = mGrid.findRight(line, ROW_OFFSET);
+        return mRight[line];
+    }
+
+    /**
+     * The first line below a line, with no other line between them: searched
+     * among the lines of its block, then among all lines; -1 if none.
+     *
+     * @see LineGrid#findBelow(int, int, int, int)
+     */
+    public int getBelow(int line){
+        if( mBelow[line] == UNKNOWN ){
+            int block = mLines.getBlock(line);
+            int below = mGrid.findBelow(line, ROW_OFFSET, mLines.getBlockStart(block), mLines.getBlockEnd(block));
+            if( below < 0 ) below = mGrid.findBelow(line, ROW_OFFSET, 0, mSize);
+            mBelow[line] = below;
+        }
+        return mBelow[line];
+    }
+
+    /**
+     * The lowest line starting above a line, the first one in table order of
+     * equally high lines; -1 if none.
+     */
+    public int getAbove(int line){
+        if( mAbove[line] == UNKNOWN ) mAbove[line] = mGrid.findAbove(line);
+        return mAbove[line];
+    }
+
+    @Override
+    public String toString(){
+        return "lines=" + mSize + " " + mGrid;
+    }
+}
@@ -0,0 +1,197 @@
+package com.creative.informatics.core;
+
+import java.util.Arrays;
+
+/**
+ * The lines of one frame, flattened in block order into parallel arrays:
+ * bounding box, value, lower-cased value and block of every line.
+ *
+ * The table is filled once per frame and shared by all matching stages, so
+ * they neither walk the blocks again nor copy a Rect per line and dictionary
+ * entry. Rectangles are int[4] {left, top, right, bottom} with the semantics
+ * of android.graphics.Rect. The arrays are reused from frame to frame.
+ *
+ * @param <T> the line objects, e.g. com.google.android.gms.vision.text.Text
+ */
+public final class LineTable<T> {
+    public static final int LEFT = 0;
+    public static final int TOP = 1;
+    public static final int RIGHT = 2;
+    public static final int BOTTOM = 3;
+
+    private int mSize;
+    private Object[] mLines = new Object[64];
+    private String[] mValues = new String[64];
+    private String[] mLowerValues = new String[64];     // computed on first use
+    private int[] mLeft = new int[64];
+    private int[] mTop = new int[64];
+    private int[] mRight = new int[64];
+    private int[] mBottom = new int[64];
+    private int[] mBlocks = new int[64];
+    private int[] mIndexInBlock = new int[64];
+
+    private int mBlockCount;
+    private int[] mBlockStarts = new int[17];           // first line of each block, and the end
+
+    /**
+     * Drops the lines of the previous frame.
+     */
+    public void clear(){
+        Arrays.fill(mLines, 0, mSize, null);
+        Arrays.fill(mValues, 0, mSize, null);
+        Arrays.fill(mLowerValues, 0, mSize, null);
+        mSize = 0;
+        mBlockCount = 0;
+    }
+
+    /**
+     * Starts the next block; the following lines belong to it.
+     */
+    public void startBlock(){
+        mBlockCount++;
+        if( mBlockCount >= mBlockStarts.length ) mBlockStarts = Arrays.copyOf(mBlockStarts, mBlockStarts.length * 2);
+        mBlockStarts[mBlockCount - 1] = mSize;
+        mBlockStarts[mBlockCount] = mSize;
+    }
+
+    /**
+     * Adds a line to the current block.
+     *
+     * @return the index of the line
+     */
+    public int add(T line, String value, int left, int top, int right, int bottom){
+        if( mBlockCount == 0 ) startBlock();
+        if( mSize == mLines.length ) grow();
+
+        mLines[mSize] = line;
+        mValues[mSize] = value;
+        mLeft[mSize] = left;
+        mTop[mSize] = top;
+        mRight[mSize] = right;
+        mBottom[mSize] = bottom;
+        mBlocks[mSize] = mBlockCount - 1;
+        mIndexInBlock[mSize] = mSize - mBlockStarts[mBlockCount - 1];
+        mBlockStarts[mBlockCount] = ++mSize;
+        return mSize - 1;
+    }
+
+    private void grow(){
+        int capacity = mLines.length * 2;
+        mLines = Arrays.copyOf(mLines, capacity);
+        mValues = Arrays.copyOf(mValues, capacity);
+        mLowerValues = Arrays.copyOf(mLowerValues, capacity);
+        mLeft = Arrays.copyOf(mLeft, capacity);
+        mTop = Arrays.copyOf(mTop, capacity);
+        mRight = Arrays.copyOf(mRight, capacity);
+        mBottom = Arrays.copyOf(mBottom, capacity);
+        mBlocks = Arrays.copyOf(mBlocks, capacity);
+        mIndexInBlock = Arrays.copyOf(mIndexInBlock, capacity);
+    }
+
+    public int size(){
+        return mSize;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int line){
+        return (T) mLines[line];
+    }
+
+    public String getValue(int line){
+        return mValues[line];
+    }
+
+    /**
+     * Same as getValue(line).toLowerCase(). Computed on first use, so other
+     * threads may only read it after that.
+     */
+    public String getLowerValue(int line){
+        if( mLowerValues[line] == null ) mLowerValues[line] = mValues[line].toLowerCase();
+        return mLowerValues[line];
+    }
+
+    public int getLeft(int line){
+        return mLeft[line];
+    }
+
+    public int getTop(int line){
+        return mTop[line];
+    }
+
+    public int getRight(int line){
+        return mRight[line];
+    }
+
+    public int getBottom(int line){
+        return mBottom[line];
+    }
+
+    public int getBlock(int line){
+        return mBlocks[line];
+    }
+
+    public int getIndexInBlock(int line){
+        return mIndexInBlock[line];
+    }
+
+    public int getBlockCount(){
+        return mBlockCount;
+    }
+
+    /**
+     * The first line of a block.
+     */
+    public int getBlockStart(int block){
+        return mBlockStarts[block];
+    }
+
+    /**
+     * One past the last line of a block.
+     */
+    public int getBlockEnd(int block){
+        return mBlockStarts[block + 1];
+    }
+
+    /**
+     * Copies the bounding box of a line to rect.
+     */
+    public void getRect(int line, int[] rect){
+        rect[LEFT] = mLeft[line];
+        rect[TOP] = mTop[line];
+        rect[RIGHT] = mRight[line];
+        rect[BOTTOM] = mBottom[line];
+    }
+
+    /**
+     * Extends rect to include the bounding box of a line, like Rect.union():
+     * empty boxes are ignored, an empty rect is replaced.
+     */
+    public void union(int[] rect, int line){
+        int left = mLeft[line];
+        int top = mTop[line];
+        int right = mRight[line];
+        int bottom = mBottom[line];
+        if( left >= right || top >= bottom ) return;
+
+        if( rect[LEFT] < rect[RIGHT] && rect[TOP] < rect[BOTTOM] ){
+            if( rect[LEFT] > left ) rect[LEFT] = left;
+            if( rect[TOP] > top ) rect[TOP] = top;
+            if( rect[RIGHT] < right ) rect[RIGHT] = right;
+            if( rect[BOTTOM] < bottom ) rect[BOTTOM] = bottom;
+        } else {
+            rect[LEFT] = left;
+            rect[TOP] = top;
+            rect[RIGHT] = right;
+            rect[BOTTOM] = bottom;
+        }
+    }
+
+    /**
+     * Whether the bounding box of a line intersects rect, like
+     * Rect.intersects().
+     */
+    public boolean intersects(int line, int[] rect){
+        return rect[LEFT] < mRight[line] && mLeft[line] < rect[RIGHT]
+                && rect[TOP] < mBottom[line] && mTop[line] < rect[BOTTOM];
+    }
+}
@@ -0,0 +1,264 @@
+package com.creative.informatics.core;
+
+import java.util.Arrays;
+
+/**
+ * Gives the lines of consecutive frames stable track ids: a line continues
+ * the track of a line of the previous frames whose box overlaps it and
+ * whose text is similar.
+ *
+ * Lines and tracks are paired greedily, best first, by the intersection
+ * over union of their boxes plus the similarity of their texts (one less
+ * the edit distance over the longer length). Pairs need an IoU of at least
+ * {@link #MIN_IOU} and a similarity of at least {@link #MIN_SIMILARITY}.
+ * Other lines start new tracks. A track not seen for more than
+ * {@link #MAX_MISSED} frames ends, so a line the detector drops for a frame
+ * keeps its id.
+ *
+ * An instance is reused for frame after frame and is not thread safe.
+ */
+public final class LineTracker {
+    public static final float MIN_IOU = 0.3f;
+    public static final float MIN_SIMILARITY = 0.5f;
+    public static final int MAX_MISSED = 2;
+
+    private int mNextId = 1;
+
+    // the tracks, sorted by top
+    private int mTrackCount;
+    private int[] mTrackIds = new int[64];
+    private int[] mTrackBoxes = new int[256];       // left, top, right, bottom of each track
+    private String[] mTrackValues = new String[64];
+    private int[] mTrackMissed = new int[64];
+    private int mMaxHeight;                         // of the boxes of the tracks
+
+    // the tracks of the next frame, swapped with the tracks when done
+    private int[] mNextTrackIds = new int[64];
+    private int[] mNextTrackBoxes = new int[256];
+    private String[] mNextTrackValues = new String[64];
+    private int[] mNextTrackMissed = new int[64];
+    private long[] mByTop = new long[64];           // top << 32 | line, or mSize + track, of the next tracks
+
+    // the lines of the current frame
+    private int mSize;
+    private int[] mIds = new int[64];
+    private boolean[] mChanged = new boolean[64];
+    private long[] mById = new long[64];            // id << 32 | line, ascending
+
+    private long[] mPairs = new long[64];
+    private boolean[] mTrackUsed = new boolean[64];
+    private int[] mDistance = new int[64];
+
+    private long mFrames;
+    private long mLines;
+    private long mTracked;
+    private long mChangedLines;
+
+    /**
+     * Pairs the lines of the next frame with the tracks.
+     */
+    public void update(LineTable<?> lines){
+        mFrames++;
+        mSize = lines.size();
+        mLines += mSize;
+        if( mIds.length < mSize ){
+            int capacity = Math.max(mSize, mIds.length * 2);
+            mIds = new int[capacity];
+            mChanged = new boolean[capacity];
+            mById = new long[capacity];
+        }
+        Arrays.fill(mIds, 0, mSize, 0);
+        Arrays.fill(mChanged, 0, mSize, true);
+        if( mTrackUsed.length < mTrackCount ) mTrackUsed = new boolean[Math.max(mTrackCount, mTrackUsed.length * 2)];
+        Arrays.fill(mTrackUsed, 0, mTrackCount, false);
+
+        // candidate pairs, best first
+        int pairs = 0;
+        for( int i=0; i<mSize; i++ ){
+            int top = lines.getTop(i), bottom = lines.getBottom(i);
+            for( int t=firstTrack((long) top - mMaxHeight); t<mTrackCount && mTrackBoxes[t * 4 + 1] < bottom; t++ ){
+                float iou = iou(lines, i, t);
+                if( iou < MIN_IOU ) continue;
+                float similarity = similarity(lines.getValue(i), mTrackValues[t]);
+                if( similarity < MIN_SIMILARITY ) continue;
+
+                if( pairs == mPairs.length ) mPairs = Arrays.copyOf(mPairs, pairs * 2);
+                long score = (long) ((iou + similarity) * 1000000);
+                mPairs[pairs++] = (score << 40) | ((long) i << 20) | t;
+            }
+        }
+        Arrays.sort(mPairs, 0, pairs);
+
+        for( int p=pairs-1; p>=0; p-- ){
+            int i = (int) (mPairs[p] >>> 20) & 0xFFFFF;
+            int t = (int) mPairs[p] & 0xFFFFF;
+            if( mIds[i] != 0 || mTrackUsed[t] ) continue;
+
+            mIds[i] = mTrackIds[t];
+            mChanged[i] = !lines.getValue(i).equals(mTrackValues[t]);
+            mTrackUsed[t] = true;
+            mTracked++;
+            if( mChanged[i] ) mChangedLines++;
+        }
+
+        updateTracks(lines);
+
+        for( int i=0; i<mSize; i++ ) mById[i] = ((long) mIds[i] << 32) | i;
+        Arrays.sort(mById, 0, mSize);
+    }
+
+    // the first track whose top is at least top
+    private int firstTrack(long top){
+        int low = 0, high = mTrackCount;
+        while( low < high ){
+            int mid = (low + high) >>> 1;
+            if( mTrackBoxes[mid * 4 + 1] < top ) low = mid + 1; else high = mid;
+        }
+        return low;
+    }
+
+    private float iou(LineTable<?> lines, int line, int track){
+        long width = Math.min(lines.getRight(line), mTrackBoxes[track * 4 + 2]) - (long) Math.max(lines.getLeft(line), mTrackBoxes[track * 4]);
+        long height = Math.min(lines.getBottom(line), mTrackBoxes[track * 4 + 3]) - (long) Math.max(lines.getTop(line), mTrackBoxes[track * 4 + 1]);
+        if( width <= 0 || height <= 0 ) return 0;
+
+        long intersection = width * height;
+        long union = area(lines.getLeft(line), lines.getTop(line), lines.getRight(line), lines.getBottom(line))
+                + area(mTrackBoxes[track * 4], mTrackBoxes[track * 4 + 1], mTrackBoxes[track * 4 + 2], mTrackBoxes[track * 4 + 3])
+                - intersection;
+        return union > 0 ? (float) intersection / union : 0;
+    }
+
+    private static long area(int left, int top, int right, int bottom){
+        return Math.max(0L, (long) right - left) * Math.max(0L, (long) bottom - top);
+    }
+
+    /**
+     * One less the Levenshtein distance of the texts over the longer length.
+     */
+    float similarity(String a, String b){
+        if( a.equals(b) ) return 1;
+        int n = a.length(), m = b.length();
+        if( n == 0 || m == 0 ) return 0;
+        if( Math.abs(n - m) > Math.max(n, m) * (1 - MIN_SIMILARITY) ) return 0;
+
+        if( mDistance.length < m + 1 ) mDistance = new int[Math.max(m + 1, mDistance.length * 2)];
+        for( int j=0; j<=m; j++ ) mDistance[j] = j;
+        for( int i=1; i<=n; i++ ){
+            int diagonal = mDistance[0];
+            mDistance[0] = i;
+            char c = a.charAt(i - 1);
+            for( int j=1; j<=m; j++ ){
+                int above = mDistance[j];
+                int cost = c == b.charAt(j - 1) ? 0 : 1;
+                mDistance[j] = Math.min(Math.min(above + 1, mDistance[j - 1] + 1), diagonal + cost);
+                diagonal = above;
+            }
+        }
+        return 1 - (float) mDistance[m] / Math.max(n, m);
+    }
+
+    // the lines of the frame become the tracks, with the tracks missed not too often
+    private void updateTracks(LineTable<?> lines){
+        if( mByTop.length < mSize + mTrackCount ) mByTop = new long[Math.max(mSize + mTrackCount, mByTop.length * 2)];
+
+        // sorted by top, lines before tracks of the same top
+        int count = 0;
+        for( int i=0; i<mSize; i++ ){
+            if( mIds[i] == 0 ) mIds[i] = mNextId++;
+            mByTop[count++] = ((long) lines.getTop(i) << 32) | i;
+        }
+        for( int t=0; t<mTrackCount; t++ ){
+            if( mTrackUsed[t] || mTrackMissed[t] >= MAX_MISSED ) continue;
+            mByTop[count++] = ((long) mTrackBoxes[t * 4 + 1] << 32) | (mSize + t);
+        }
+        Arrays.sort(mByTop, 0, count);
+
+        if( mNextTrackIds.length < count ){
+            int capacity = Math.max(count, mNextTrackIds.length * 2);
+            mNextTrackIds = new int[capacity];
+            mNextTrackBoxes = new int[capacity * 4];
+            mNextTrackValues = new String[capacity];
+            mNextTrackMissed = new int[capacity];
+        }
+        mMaxHeight = 0;
+        for( int j=0; j<count; j++ ){
+            int from = (int) mByTop[j];
+            if( from < mSize ){
+                mNextTrackIds[j] = mIds[from];
+                mNextTrackBoxes[j * 4] = lines.getLeft(from);
+                mNextTrackBoxes[j * 4 + 1] = lines.getTop(from);
+                mNextTrackBoxes[j * 4 + 2] = lines.getRight(from);
+                mNextTrackBoxes[j * 4 + 3] = lines.getBottom(from);
+                mNextTrackValues[j] = lines.getValue(from);
+                mNextTrackMissed[j] = 0;
+            } else {
+                int t = from - mSize;
+                mNextTrackIds[j] = mTrackIds[t];
+                System.arraycopy(mTrackBoxes, t * 4, mNextTrackBoxes, j * 4, 4);
+                mNextTrackValues[j] = mTrackValues[t];
+                mNextTrackMissed[j] = mTrackMissed[t] + 1;
+            }
+            mMaxHeight = (int) Math.max(mMaxHeight, Math.min(Integer.MAX_VALUE, (long) mNextTrackBoxes[j * 4 + 3] - mNextTrackBoxes[j * 4 + 1]));
+        }
+        Arrays.fill(mNextTrackValues, count, mNextTrackValues.length, null);
+
+        int[] ids = mTrackIds;
+        mTrackIds = mNextTrackIds;
+        mNextTrackIds = ids;
+        int[] boxes = mTrackBoxes;
+        mTrackBoxes = mNextTrackBoxes;
+        mNextTrackBoxes = boxes;
+        String[] values = mTrackValues;
+        mTrackValues = mNextTrackValues;
+        mNextTrackValues = values;
+        int[] missed = mTrackMissed;
+        mTrackMissed = mNextTrackMissed;
+        mNextTrackMissed = missed;
+        mTrackCount = count;
+    }
+
+    /**
+     * The track id of a line of the current frame, never 0.
+     */
+    public int getTrack(int line){
+        return mIds[line];
+    }
+
+    /**
+     * Whether a line starts a new track or changed the text of its track.
+     */
+    public boolean isChanged(int line){
+        return mChanged[line];
+    }
+
+    /**
+     * The line of a track in the current frame, -1 if the track has none.
+     */
+    public int getLine(int track){
+        int low = 0, high = mSize;
+        long key = (long) track << 32;
+        while( low < high ){
+            int mid = (low + high) >>> 1;
+            if( mById[mid] < key ) low = mid + 1; else high = mid;
+        }
+        return low < mSize && (mById[low] >>> 32) == track ? (int) mById[low] : -1;
+    }
+
+    /**
+     * Drops all tracks.
+     */
+    public void clear(){
+        mTrackCount = 0;
+        mSize = 0;
+        mMaxHeight = 0;
+        Arrays.fill(mTrackValues, null);
+        Arrays.fill(mNextTrackValues, null);
+    }
+
+    @Override
+    public String toString(){
+        return "frames=" + mFrames + " lines=" + mLines + " tracked=" + mTracked
+                + " changed=" + mChangedLines + " tracks=" + mTrackCount;
+    }
+}
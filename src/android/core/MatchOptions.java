@@ -0,0 +1,45 @@
+package com.creative.informatics.core;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The OCR options that change how fields are matched, with their defaults.
+ * The fields are read when a {@link FieldEntry} or {@link FieldExtractor} is
+ * created; changing them later has no effect on it.
+ */
+public final class MatchOptions {
+    /** Country of the postal code rules, see {@link PostalCodeRules}. */
+    public String country = "";
+
+    /** Postal code rule packs by country, replacing the built-in ones. */
+    public Map<String, List<String>> postalCodes = new HashMap<String, List<String>>();
+
+    /** Whether value patterns are matched with {@link RegexDfa} where possible. */
+    public boolean linearValuePatterns;
+
+    /** ms per java.util.regex match if linearValuePatterns. */
+    public int valuePatternTimeLimit = 50;
+
+    /** Readings each value is voted from, 0 to keep the longest value. */
+    public int consensusFrames;
+
+    /** Confidence of a stable value. */
+    public float consensusThreshold = 0.6f;
+
+    /** Threads finding the values of a frame. */
+    public int extractionThreads = 1;
+
+    /** ms for matching a frame, 0 if unlimited. */
+    public int frameTimeBudget;
+
+    @Override
+    public String toString(){
+        return "country=" + country + " postalCodes=" + postalCodes.keySet()
+                + " linearValuePatterns=" + linearValuePatterns
+                + " valuePatternTimeLimit=" + valuePatternTimeLimit
+                + " consensusFrames=" + consensusFrames + " consensusThreshold=" + consensusThreshold
+                + " extractionThreads=" + extractionThreads + " frameTimeBudget=" + frameTimeBudget;
+    }
+}
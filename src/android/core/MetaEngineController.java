@@ -0,0 +1,152 @@
+package com.creative.informatics.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.zedlitz.phonet4java.Coder;
+import de.zedlitz.phonet4java.DaitchMokotoff;
+import de.zedlitz.phonet4java.DaitchMokotoffCodes;
+import de.zedlitz.phonet4java.KeyCoder;
+import de.zedlitz.phonet4java.KoelnerPhonetik;
+import de.zedlitz.phonet4java.Phonet1;
+import de.zedlitz.phonet4java.Phonet2;
+import de.zedlitz.phonet4java.PhoneticKeys;
+import de.zedlitz.phonet4java.Soundex;
+import de.zedlitz.phonet4java.SoundexRefined;
+
+public class MetaEngineController {
+    /** Default size of the phonetic caches in chars of cached text. */
+    public static final int DEFAULT_PHONETIC_CACHE_SIZE = 64 * 1024;
+
+    Coder mCoder = null;
+    private final PhoneticCache<Long> mKeyCache = new PhoneticCache<Long>(DEFAULT_PHONETIC_CACHE_SIZE);
+    private final PhoneticCache<DaitchMokotoffCodes> mCodesCache = new PhoneticCache<DaitchMokotoffCodes>(DEFAULT_PHONETIC_CACHE_SIZE);
+
+    public MetaEngineController(String id){
+        initWithEngineId(id);
+    }
+
+    private void initWithEngineId(String id){
+        List<Coder> list = new ArrayList<>();
+        list.add(new DaitchMokotoff());
+        list.add(new KoelnerPhonetik());
+        list.add(new Phonet1());
+        list.add(new Phonet2());
+        list.add(new Soundex());
+        list.add(new SoundexRefined());
+
+        for(Coder item : list){
+            if( item.getEngineId().equalsIgnoreCase(id) ){
+                mCoder = item;
+                break;
+            }
+        }
+    }
+
+    public String getSelectedEngineId(){
+        if( mCoder != null) return mCoder.getEngineId();
+
+        return "native";
+    }
+
+    public String getPhoneticText(String text){
+        if( mCoder == null ) return text;
+
+        return mCoder.code(text);
+    }
+
+    /**
+     * The phonetic text as primitive key: equal keys mean the phonetic texts
+     * are equal ignoring case (see {@link PhoneticKeys} for long codes).
+     */
+    public long getPhoneticKey(String text){
+        return getPhoneticKey(text, 0, text.length());
+    }
+
+    /**
+     * Same as {@link #getPhoneticKey(String)} for text[start, end), without
+     * creating a substring. Results are cached, see {@link #setPhoneticCacheSize}.
+     */
+    public long getPhoneticKey(CharSequence text, int start, int end){
+        Long cached = mKeyCache.get(text, start, end);
+        if( cached != null ) return cached;
+
+        long key = encodePhoneticKey(text, start, end);
+        mKeyCache.put(text, start, end, key);
+
+        return key;
+    }
+
+    private long encodePhoneticKey(CharSequence text, int start, int end){
+        if( mCoder instanceof KeyCoder ) return ((KeyCoder) mCoder).key(text, start, end);
+        if( mCoder == null ) return PhoneticKeys.of(text, start, end);
+
+        StringBuilder code = new StringBuilder();
+        mCoder.code(text, start, end, code);
+        return PhoneticKeys.of(code);
+    }
+
+    /**
+     * Whether the selected engine produces a set of codes per text (one for
+     * every reading of ambiguous sounds) instead of a single one.
+     */
+    public boolean hasPhoneticCodes(){
+        return mCoder instanceof DaitchMokotoff;
+    }
+
+    /**
+     * Limits the number of codes {@link #getPhoneticCodes} returns per text.
+     * The cached codes were made under the old limit and are dropped.
+     */
+    public void setMaxPhoneticCodes(int maxCodes){
+        if( mCoder instanceof DaitchMokotoff ){
+            ((DaitchMokotoff) mCoder).setMaxBranches(maxCodes);
+            mCodesCache.clear();
+        }
+    }
+
+    public DaitchMokotoffCodes getPhoneticCodes(String text, DaitchMokotoffCodes out){
+        ((DaitchMokotoff) mCoder).codeAll(text, out);
+
+        return out;
+    }
+
+    public DaitchMokotoffCodes getPhoneticCodes(CharSequence text, int start, int end, DaitchMokotoffCodes out){
+        DaitchMokotoffCodes cached = mCodesCache.get(text, start, end);
+
+        if( cached == null ){
+            cached = new DaitchMokotoffCodes();
+            ((DaitchMokotoff) mCoder).codeAll(text, start, end, cached);
+            mCodesCache.put(text, start, end, cached);
+        }
+
+        out.clear();
+        for( int i=0; i<cached.size(); i++ ){
+            out.add(cached.get(i));
+        }
+
+        return out;
+    }
+
+    /**
+     * Sets the size of the phonetic caches in chars of cached text, 0 disables them.
+     */
+    public void setPhoneticCacheSize(int size){
+        mKeyCache.setMaxSize(size);
+        mCodesCache.setMaxSize(size);
+    }
+
+    public long getPhoneticCacheHits(){
+        return mKeyCache.getHits() + mCodesCache.getHits();
+    }
+
+    public long getPhoneticCacheMisses(){
+        return mKeyCache.getMisses() + mCodesCache.getMisses();
+    }
+
+    public String getPhoneticCacheStats(){
+        return "keys: " + mKeyCache + ", codes: " + mCodesCache;
+    }
+
+
+}
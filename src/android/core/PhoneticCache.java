@@ -0,0 +1,135 @@
+package com.creative.informatics.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded LRU cache of phonetic results keyed by text.
+ *
+ * The size is counted in chars of the cached texts (plus a fixed overhead per
+ * entry), so a burst of long OCR lines evicts as many short ones as it
+ * occupies. Lookups by range do not create a String, only a miss copies the
+ * text into the cache.
+ */
+final class PhoneticCache<V> {
+    private static final int ENTRY_OVERHEAD = 32;
+
+    private final LinkedHashMap<TextKey, V> map = new LinkedHashMap<TextKey, V>(64, 0.75f, true);
+    private final TextKey probe = new TextKey();
+    private int maxSize;
+    private int size;
+    private long hits;
+    private long misses;
+
+    PhoneticCache(int maxSize){
+        this.maxSize = maxSize;
+    }
+
+    synchronized V get(CharSequence text, int start, int end){
+        probe.set(text, start, end);
+        V value = map.get(probe);
+        probe.set(null, 0, 0);
+
+        if( value != null ) hits++;
+        else misses++;
+
+        return value;
+    }
+
+    synchronized void put(CharSequence text, int start, int end, V value){
+        int weight = (end - start) + ENTRY_OVERHEAD;
+        if( weight > maxSize ) return;
+
+        TextKey key = new TextKey();
+        key.set(text.subSequence(start, end).toString(), 0, end - start);
+
+        if( map.put(key, value) == null ) size += weight;
+        trimTo(maxSize);
+    }
+
+    /**
+     * Sets the maximum size in chars, 0 disables the cache.
+     */
+    synchronized void setMaxSize(int maxSize){
+        this.maxSize = Math.max(0, maxSize);
+        trimTo(this.maxSize);
+    }
+
+    synchronized void clear(){
+        map.clear();
+        size = 0;
+        hits = 0;
+        misses = 0;
+    }
+
+    synchronized long getHits(){
+        return hits;
+    }
+
+    synchronized long getMisses(){
+        return misses;
+    }
+
+    private void trimTo(int maxSize){
+        Iterator<Map.Entry<TextKey, V>> it = map.entrySet().iterator();
+        while( size > maxSize && it.hasNext() ){
+            TextKey eldest = it.next().getKey();
+            it.remove();
+            size -= eldest.length() + ENTRY_OVERHEAD;
+        }
+    }
+
+    @Override
+    public synchronized String toString(){
+        long lookups = hits + misses;
+        return "hits=" + hits + " misses=" + misses
+                + " hitRate=" + (lookups > 0 ? (100 * hits / lookups) : 0) + "%"
+                + " entries=" + map.size() + " size=" + size + "/" + maxSize;
+    }
+
+    /**
+     * A range of a CharSequence with String equality, usable as map key.
+     */
+    private static final class TextKey {
+        private CharSequence text;
+        private int start;
+        private int end;
+        private int hash;
+
+        void set(CharSequence text, int start, int end){
+            this.text = text;
+            this.start = start;
+            this.end = end;
+
+            int h = 0;
+            for( int i=start; i<end; i++ ){
+                h = 31 * h + text.charAt(i);
+            }
+            hash = h;
+        }
+
+        int length(){
+            return end - start;
+        }
+
+        @Override
+        public int hashCode(){
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if( this == o ) return true;
+            if( !(o instanceof TextKey) ) return false;
+
+            TextKey other = (TextKey) o;
+            if( hash != other.hash || length() != other.length() ) return false;
+
+            for( int i=0; i<length(); i++ ){
+                if( text.charAt(start + i) != other.text.charAt(other.start + i) ) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.creative.informatics.core;
+
+import java.util.Arrays;
+
+import de.zedlitz.phonet4java.DaitchMokotoffCodes;
+
+/**
+ * Inverted index from the phonetic key of a keyword to the dictionary entries
+ * and keywords that have it.
+ *
+ * A key only matches line prefixes with the keyword's number of words, so the
+ * table is keyed by (key, word count). Keys live in an open addressing table
+ * of primitive arrays; every slot heads a linked list of postings, each one
+ * an (entry, keyword) pair packed into an int. For engines with several codes
+ * per text (Daitch-Mokotoff) every code of a keyword is added as key.
+ *
+ * The index is built once per dictionary and only read afterwards.
+ */
+public final class PhoneticKeyIndex {
+    private static final int MAX_ENTRIES = 1 << 15;
+    private static final int MAX_KEYWORDS = 1 << 16;
+
+    private final MetaEngineController mEngine;
+
+    // hash table, empty slots have mHeads[slot] == -1
+    private long[] mKeys;
+    private int[] mWordCounts;
+    private int[] mHeads;
+    private int mKeyCount;
+
+    // postings: entry << 16 | keyword, chained through mNext
+    private int[] mPostings = new int[16];
+    private int[] mNext = new int[16];
+    private int mPostingCount;
+
+    private int[] mWordCountsInUse = new int[0];      // sorted distinct word counts
+    private int mSharedKeys;                          // keys of more than one entry or keyword
+    private int mMaxProbes;
+
+    public PhoneticKeyIndex(MetaEngineController engine){
+        mEngine = engine;
+        allocate(16);
+    }
+
+    public MetaEngineController getEngine(){
+        return mEngine;
+    }
+
+    private void allocate(int capacity){
+        mKeys = new long[capacity];
+        mWordCounts = new int[capacity];
+        mHeads = new int[capacity];
+        Arrays.fill(mHeads, -1);
+    }
+
+    /**
+     * Adds keyword number keyword of dictionary entry number entry.
+     */
+    public void add(long key, int wordCount, int entry, int keyword){
+        if( entry >= MAX_ENTRIES || keyword >= MAX_KEYWORDS )
+            throw new IllegalArgumentException("too many entries or keywords: " + entry + "/" + keyword);
+
+        if( (mKeyCount + 1) * 2 > mKeys.length ) rehash(mKeys.length * 2);
+
+        int slot = find(key, wordCount);
+        if( mHeads[slot] < 0 ){
+            mKeys[slot] = key;
+            mWordCounts[slot] = wordCount;
+            mKeyCount++;
+            addWordCount(wordCount);
+        } else {
+            mSharedKeys += (mNext[mHeads[slot]] < 0) ? 1 : 0;
+        }
+
+        if( mPostingCount == mPostings.length ){
+            mPostings = Arrays.copyOf(mPostings, mPostingCount * 2);
+            mNext = Arrays.copyOf(mNext, mPostingCount * 2);
+        }
+        mPostings[mPostingCount] = (entry << 16) | keyword;
+        mNext[mPostingCount] = mHeads[slot];
+        mHeads[slot] = mPostingCount++;
+    }
+
+    /**
+     * Adds all codes of a keyword, for engines with several codes per text.
+     */
+    public void add(DaitchMokotoffCodes codes, int wordCount, int entry, int keyword){
+        for( int i=0; i<codes.size(); i++ ){
+            add(codes.get(i), wordCount, entry, keyword);
+        }
+    }
+
+    private void addWordCount(int wordCount){
+        int pos = Arrays.binarySearch(mWordCountsInUse, wordCount);
+        if( pos >= 0 ) return;
+
+        pos = -pos - 1;
+        int[] counts = new int[mWordCountsInUse.length + 1];
+        System.arraycopy(mWordCountsInUse, 0, counts, 0, pos);
+        counts[pos] = wordCount;
+        System.arraycopy(mWordCountsInUse, pos, counts, pos + 1, mWordCountsInUse.length - pos);
+        mWordCountsInUse = counts;
+    }
+
+    private void rehash(int capacity){
+        long[] keys = mKeys;
+        int[] wordCounts = mWordCounts;
+        int[] heads = mHeads;
+
+        allocate(capacity);
+        mMaxProbes = 0;
+        for( int i=0; i<heads.length; i++ ){
+            if( heads[i] < 0 ) continue;
+
+            int slot = find(keys[i], wordCounts[i]);
+            mKeys[slot] = keys[i];
+            mWordCounts[slot] = wordCounts[i];
+            mHeads[slot] = heads[i];
+        }
+    }
+
+    /**
+     * The slot of (key, wordCount), or the empty slot where it belongs.
+     */
+    private int find(long key, int wordCount){
+        int mask = mKeys.length - 1;
+        int slot = hash(key, wordCount) & mask;
+        int probes = 1;
+
+        while( mHeads[slot] >= 0 && (mKeys[slot] != key || mWordCounts[slot] != wordCount) ){
+            slot = (slot + 1) & mask;
+            probes++;
+        }
+        if( probes > mMaxProbes ) mMaxProbes = probes;
+
+        return slot;
+    }
+
+    private static int hash(long key, int wordCount){
+        long h = (key ^ ((long) wordCount << 59)) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Finds the keywords that match the line: for each dictionary entry the
+     * lowest matching keyword index is stored in matches[entry], -1 if none.
+     *
+     * @return the number of entries with a match
+     */
+    public int match(PhoneticLineIndex line, int[] matches){
+        Arrays.fill(matches, -1);
+        if( mKeyCount == 0 ) return 0;
+
+        int found = 0;
+        for( int wordCount : mWordCountsInUse ){
+            if( wordCount > line.getWordCount() ) break;
+
+            if( mEngine.hasPhoneticCodes() ){
+                DaitchMokotoffCodes codes = line.getPhoneticCodes(mEngine, wordCount);
+                for( int i=0; i<codes.size(); i++ ){
+                    found += collect(codes.get(i), wordCount, matches);
+                }
+            } else {
+                found += collect(line.getPhoneticKey(mEngine, wordCount), wordCount, matches);
+            }
+        }
+        return found;
+    }
+
+    private int collect(long key, int wordCount, int[] matches){
+        int mask = mKeys.length - 1;
+        int slot = hash(key, wordCount) & mask;
+
+        while( mHeads[slot] >= 0 && (mKeys[slot] != key || mWordCounts[slot] != wordCount) ){
+            slot = (slot + 1) & mask;
+        }
+
+        int found = 0;
+        for( int p=mHeads[slot]; p>=0; p=mNext[p] ){
+            int entry = mPostings[p] >>> 16;
+            int keyword = mPostings[p] & 0xFFFF;
+
+            if( matches[entry] < 0 ) found++;
+            if( matches[entry] < 0 || keyword < matches[entry] ) matches[entry] = keyword;
+        }
+        return found;
+    }
+
+    public int getKeyCount(){
+        return mKeyCount;
+    }
+
+    public int getPostingCount(){
+        return mPostingCount;
+    }
+
+    /**
+     * Number of keys shared by several keywords, i.e. phonetic collisions.
+     */
+    public int getSharedKeyCount(){
+        return mSharedKeys;
+    }
+
+    /**
+     * Approximate size of the index arrays in bytes.
+     */
+    public long getMemoryUse(){
+        return mKeys.length * (8L + 4 + 4) + mPostings.length * (4L + 4) + mWordCountsInUse.length * 4L;
+    }
+
+    @Override
+    public String toString(){
+        return "keys=" + mKeyCount + " postings=" + mPostingCount + " shared=" + mSharedKeys
+                + " maxProbes=" + mMaxProbes + " slots=" + mKeys.length + " bytes=" + getMemoryUse();
+    }
+}
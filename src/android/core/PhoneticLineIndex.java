@@ -0,0 +1,151 @@
+package com.creative.informatics.core;
+
+import java.util.Arrays;
+
+import de.zedlitz.phonet4java.DaitchMokotoffCodes;
+
+/**
+ * The words of one OCR line and the phonetic codes of its first 1..n words.
+ *
+ * The index is built once per line and shared by the keywords of all
+ * dictionary entries, so a line is encoded at most once per word count
+ * instead of once per keyword. Words are split like line.split("[ ]+"), and
+ * the first n words are what joining them with " " gives. Codes are computed
+ * on first use.
+ *
+ * An instance is reused for line after line and is not thread safe.
+ */
+public final class PhoneticLineIndex {
+    private String mText = "";
+    private CharSequence mJoined = "";                  // all words joined by single spaces
+    private final StringBuilder mJoinBuffer = new StringBuilder();
+    private int mWordCount;
+    private int[] mWordEnds = new int[16];              // end of the first n words in mJoined, at index n
+
+    private MetaEngineController mEngine;               // engine of the cached codes
+    private long[] mKeys = new long[8];
+    private boolean[] mHasKey = new boolean[8];
+    private DaitchMokotoffCodes[] mCodes = new DaitchMokotoffCodes[8];
+    private boolean[] mHasCodes = new boolean[8];
+
+    public PhoneticLineIndex(){
+    }
+
+    public PhoneticLineIndex(String text){
+        set(text);
+    }
+
+    /**
+     * Indexes the next line, dropping the codes of the previous one.
+     */
+    public void set(String text){
+        mText = text;
+        mWordCount = 0;
+        mJoinBuffer.setLength(0);
+        Arrays.fill(mHasKey, false);
+        Arrays.fill(mHasCodes, false);
+
+        int length = text.length();
+        if( length == 0 ){
+            // "".split("[ ]+") is the single word ""
+            addWord(0);
+            mJoined = text;
+            return;
+        }
+
+        boolean regular = text.charAt(0) != ' ';
+        int pos = 0;
+
+        // a line starting with spaces has an empty first word, unless there are no other words
+        if( !regular ){
+            while( pos < length && text.charAt(pos) == ' ' ) pos++;
+            if( pos < length ) addWord(0);
+        }
+
+        while( pos < length ){
+            int start = pos;
+            while( pos < length && text.charAt(pos) != ' ' ) pos++;
+
+            if( regular ){
+                addWord(pos);
+            } else {
+                if( mJoinBuffer.length() > 0 || mWordCount > 0 ) mJoinBuffer.append(' ');
+                mJoinBuffer.append(text, start, pos);
+                addWord(mJoinBuffer.length());
+            }
+
+            int next = pos;
+            while( next < length && text.charAt(next) == ' ' ) next++;
+
+            if( regular && next > pos + 1 && next < length ){
+                // several spaces between two words: continue on a joined copy
+                regular = false;
+                mJoinBuffer.append(text, 0, pos);
+            }
+            pos = next;
+        }
+
+        mJoined = regular ? text : mJoinBuffer;
+    }
+
+    private void addWord(int end){
+        mWordCount++;
+        if( mWordCount >= mWordEnds.length ) mWordEnds = Arrays.copyOf(mWordEnds, mWordEnds.length * 2);
+        mWordEnds[mWordCount] = end;
+    }
+
+    public String getText(){
+        return mText;
+    }
+
+    /**
+     * Number of words, same as line.split("[ ]+").length.
+     */
+    public int getWordCount(){
+        return mWordCount;
+    }
+
+    /**
+     * The phonetic key of the first wordCount words.
+     */
+    public long getPhoneticKey(MetaEngineController engine, int wordCount){
+        useEngine(engine);
+        if( wordCount >= mKeys.length ){
+            mKeys = Arrays.copyOf(mKeys, wordCount * 2);
+            mHasKey = Arrays.copyOf(mHasKey, wordCount * 2);
+        }
+
+        if( !mHasKey[wordCount] ){
+            mKeys[wordCount] = engine.getPhoneticKey(mJoined, 0, mWordEnds[wordCount]);
+            mHasKey[wordCount] = true;
+        }
+        return mKeys[wordCount];
+    }
+
+    /**
+     * All phonetic codes of the first wordCount words, see
+     * {@link MetaEngineController#getPhoneticCodes}. The set belongs to the index.
+     */
+    public DaitchMokotoffCodes getPhoneticCodes(MetaEngineController engine, int wordCount){
+        useEngine(engine);
+        if( wordCount >= mCodes.length ){
+            mCodes = Arrays.copyOf(mCodes, wordCount * 2);
+            mHasCodes = Arrays.copyOf(mHasCodes, wordCount * 2);
+        }
+
+        if( !mHasCodes[wordCount] ){
+            if( mCodes[wordCount] == null ) mCodes[wordCount] = new DaitchMokotoffCodes();
+            engine.getPhoneticCodes(mJoined, 0, mWordEnds[wordCount], mCodes[wordCount]);
+            mHasCodes[wordCount] = true;
+        }
+        return mCodes[wordCount];
+    }
+
+    private void useEngine(MetaEngineController engine){
+        if( mEngine != engine ){
+            mEngine = engine;
+            Arrays.fill(mHasKey, false);
+            Arrays.fill(mHasCodes, false);
+        }
+    }
+}
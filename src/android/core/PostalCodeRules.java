@@ -0,0 +1,109 @@
+package com.creative.informatics.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Postal code rules by country. A line in which a rule of the selected
+ * country is found is taken as the last line of a Service Address that has
+ * no keyword.
+ *
+ * Rules come in per-country packs, the built-in ones and those of the OCR
+ * options, which replace the built-in pack of their country. The pack of a
+ * country is compiled once into a {@link RegexDfaSet}, so a line is searched
+ * for all rules of the pack in one pass. Packs with rules the DFA does not
+ * support, and lines it cannot search, are searched rule by rule with the
+ * precompiled java.util.regex patterns instead.
+ */
+public final class PostalCodeRules {
+    private static final String TAG = PostalCodeRules.class.getSimpleName();
+    private static final Map<String, List<String>> sBuiltInPacks = new HashMap<String, List<String>>();
+
+    static {
+        sBuiltInPacks.put("Australia", Arrays.asList(
+                "VIC[\\s]*[0-9]{4}$",
+                "NSW[\\s]*[0-9]{4}$",
+                "QLD[\\s]*[0-9]{4}$",
+                "NT[\\s]*[0-9]{4}$",
+                "WA[\\s]*[0-9]{4}$",
+                "SA[\\s]*[0-9]{4}$",
+                "TAS[\\s]*[0-9]{4}$"));
+    }
+
+    private final String mCountry;
+    private final Pattern[] mPatterns;
+    private final RegexDfaSet mDfa;             // null if a rule is not supported
+
+    private PostalCodeRules(String country, List<String> rules){
+        mCountry = country;
+
+        List<Pattern> patterns = new ArrayList<Pattern>();
+        List<String> sources = new ArrayList<String>();
+        for( String rule : rules ){
+            try {
+                patterns.add(Pattern.compile(rule));
+                sources.add(rule);
+            } catch (PatternSyntaxException e) {
+                EngineLog.e(TAG, "invalid postal code rule of " + country + ": " + rule + " (" + e.getDescription() + ")");
+            }
+        }
+        mPatterns = patterns.toArray(new Pattern[patterns.size()]);
+
+        RegexDfaSet dfa = null;
+        try {
+            dfa = RegexDfaSet.compile(sources, false, RegexDfa.DEFAULT_MAX_STATES);
+        } catch (RegexDfa.UnsupportedPatternException e) {
+            // searched with java.util.regex
+        }
+        mDfa = dfa;
+    }
+
+    /**
+     * The compiled rules of a country, from its pack in packs or else its
+     * built-in one, null if it has neither.
+     *
+     * @param packs rule packs by country, as {@link MatchOptions#postalCodes}
+     */
+    public static PostalCodeRules forCountry(String country, Map<String, List<String>> packs){
+        List<String> rules = packs.get(country);
+        if( rules == null ) rules = sBuiltInPacks.get(country);
+        return rules == null ? null : new PostalCodeRules(country, rules);
+    }
+
+    public String getCountry(){
+        return mCountry;
+    }
+
+    public int size(){
+        return mPatterns.length;
+    }
+
+    /**
+     * Whether the rules are searched in one pass.
+     */
+    public boolean isSinglePass(){
+        return mDfa != null;
+    }
+
+    /**
+     * The lowest numbered rule found in the line, -1 if none.
+     */
+    public int find(CharSequence line){
+        if( mDfa != null && mDfa.supports(line) ) return mDfa.findFirst(line);
+
+        for( int i=0; i<mPatterns.length; i++ ){
+            if( mPatterns[i].matcher(line).find() ) return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString(){
+        return mCountry + ": rules=" + mPatterns.length + " " + (mDfa != null ? mDfa.toString() : "java.util.regex");
+    }
+}
@@ -0,0 +1,946 @@
+package com.creative.informatics.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Linear-time matcher for the subset of java.util.regex that value patterns
+ * use: literals, escapes, character classes, \d \w \s and their negations,
+ * '.', groups, alternation, greedy and lazy quantifiers, and '^'/'$' at the
+ * start/end of the whole pattern.
+ *
+ * A pattern is compiled into DFAs once; find() then reads every char of the
+ * text at most twice, whatever the pattern:
+ * <ul>
+ * <li>a reverse DFA, scanned from the end of the text, finds the leftmost
+ * position where a match starts,</li>
+ * <li>a forward DFA from there, whose states are NFA state lists in the
+ * order a backtracking matcher tries them, finds where the match ends.</li>
+ * </ul>
+ * So the result is the same as Matcher.find() gives for the pattern, with
+ * these exceptions left to java.util.regex by the caller: texts with
+ * surrogate chars (java.util.regex matches code points), and texts ending in
+ * a line terminator for patterns ending in '$'.
+ *
+ * Constructs that are not supported, repetitions of subpatterns that match
+ * "" and patterns needing more than maxStates DFA states throw
+ * {@link UnsupportedPatternException} at compile time.
+ *
+ * An instance is immutable and may be shared by threads.
+ */
+public final class RegexDfa {
+    public static final int DEFAULT_MAX_STATES = 1024;
+
+    private static final int MAX_REPEAT = 1000;
+    private static final int MAX_NFA_NODES = 16 * 1024;
+    private static final int INFINITE = -1;
+
+    // predefined classes as sorted, disjoint ranges {first0, last0, first1, last1, ...}
+    private static final int[] DIGIT = { '0', '9' };
+    private static final int[] WORD = { '0', '9', 'A', 'Z', '_', '_', 'a', 'z' };
+    private static final int[] SPACE = { '\t', '\r', ' ', ' ' };
+    private static final int[] DOT = complement(new int[] { '\n', '\n', '\r', '\r', 0x85, 0x85, 0x2028, 0x2029 });
+
+    private final String mSource;
+    private final boolean mStartAnchored;
+    private final boolean mEndAnchored;
+
+    private final Alphabet mAlphabet;
+    private final int mClasses;
+    private final char[] mAsciiClass;
+
+    private final int[] mReverseDelta;          // [state * mClasses + class], -1 if dead
+    private final boolean[] mReverseAccept;
+    private final int[] mForwardDelta;          // null if end anchored
+    private final boolean[] mForwardAccept;
+
+    private RegexDfa(String source, Parser parser, int maxStates) throws UnsupportedPatternException {
+        mSource = source;
+        mStartAnchored = parser.startAnchored;
+        mEndAnchored = parser.endAnchored;
+        mAlphabet = new Alphabet(parser.sets);
+        mClasses = mAlphabet.classes;
+        mAsciiClass = mAlphabet.asciiClass;
+
+        Nfa reverse = new Nfa(mAlphabet);
+        int reverseStart = reverse.compile(parser.root, reverse.match(0), true);
+        int[] starts = { reverseStart };
+        Builder builder = new Builder(reverse, starts, mEndAnchored ? new int[0] : starts, maxStates, false);
+        mReverseDelta = builder.delta;
+        mReverseAccept = builder.accept;
+
+        if( mEndAnchored ){
+            mForwardDelta = null;
+            mForwardAccept = null;
+        } else {
+            Nfa forward = new Nfa(mAlphabet);
+            int forwardStart = forward.compile(parser.root, forward.match(0), false);
+            builder = new Builder(forward, new int[] { forwardStart }, new int[0], maxStates, true);
+            mForwardDelta = builder.delta;
+            mForwardAccept = builder.accept;
+        }
+    }
+
+    /**
+     * Compiles a pattern, matched as Pattern.compile("(?i:" + regex + ")")
+     * would if caseInsensitive.
+     */
+    public static RegexDfa compile(String regex, boolean caseInsensitive, int maxStates)
+            throws UnsupportedPatternException {
+        Parser parser = new Parser(regex, caseInsensitive, new ArrayList<int[]>());
+        parser.parseAnchored();
+        check(parser.root);
+
+        return new RegexDfa(regex, parser, maxStates);
+    }
+
+    /**
+     * Sets of chars a text must contain one of each to match the pattern,
+     * matched as compile() would. Empty if there are none.
+     */
+    static List<int[]> requiredSets(String regex, boolean caseInsensitive) throws UnsupportedPatternException {
+        Parser parser = new Parser(regex, caseInsensitive, new ArrayList<int[]>());
+        return requiredSets(parser.parse(), parser.sets);
+    }
+
+    /**
+     * The required sets of a subpattern. An alternation requires the union
+     * of the smallest required set of every alternative.
+     */
+    private static List<int[]> requiredSets(Node node, List<int[]> sets){
+        List<int[]> required = new ArrayList<int[]>();
+        switch( node.kind ){
+            case Node.SET:
+                required.add(sets.get(node.set));
+                break;
+
+            case Node.CONCAT:
+                for( Node kid : node.kids ) required.addAll(requiredSets(kid, sets));
+                break;
+
+            case Node.ALT: {
+                int[] union = new int[0];
+                for( Node kid : node.kids ){
+                    int[] smallest = null;
+                    for( int[] set : requiredSets(kid, sets) ){
+                        if( smallest == null || size(set) < size(smallest) ) smallest = set;
+                    }
+                    if( smallest == null ) return required;
+
+                    int[] ranges = Arrays.copyOf(union, union.length + smallest.length);
+                    System.arraycopy(smallest, 0, ranges, union.length, smallest.length);
+                    union = normalize(ranges, ranges.length);
+                }
+                required.add(union);
+                break;
+            }
+
+            case Node.REPEAT:
+                if( node.min > 0 ) required.addAll(requiredSets(node.kids.get(0), sets));
+                break;
+        }
+        return required;
+    }
+
+    private static int size(int[] set){
+        int size = 0;
+        for( int i=0; i<set.length; i+=2 ) size += set[i + 1] - set[i] + 1;
+        return size;
+    }
+
+    /**
+     * Rejects what is left to java.util.regex: anchors inside the pattern and
+     * repeated subpatterns that match "" (which the two engines iterate
+     * differently).
+     */
+    static void check(Node node) throws UnsupportedPatternException {
+        switch( node.kind ){
+            case Node.BOL:
+            case Node.EOL:
+                throw new UnsupportedPatternException("anchor inside the pattern");
+
+            case Node.REPEAT:
+                if( node.max != 1 && isNullable(node.kids.get(0)) )
+                    throw new UnsupportedPatternException("repetition of a pattern matching \"\"");
+                break;
+        }
+
+        if( node.kids != null ){
+            for( Node kid : node.kids ) check(kid);
+        }
+    }
+
+    private static boolean isNullable(Node node){
+        switch( node.kind ){
+            case Node.SET:
+                return false;
+
+            case Node.CONCAT:
+                for( Node kid : node.kids ){
+                    if( !isNullable(kid) ) return false;
+                }
+                return true;
+
+            case Node.ALT:
+                for( Node kid : node.kids ){
+                    if( isNullable(kid) ) return true;
+                }
+                return false;
+
+            case Node.REPEAT:
+                return node.min == 0 || isNullable(node.kids.get(0));
+
+            default:
+                return true;
+        }
+    }
+
+    public String getSource(){
+        return mSource;
+    }
+
+    public boolean isEndAnchored(){
+        return mEndAnchored;
+    }
+
+    public int getStateCount(){
+        return mReverseAccept.length + (mForwardAccept != null ? mForwardAccept.length : 0);
+    }
+
+    /**
+     * Whether find() can match the text: false for texts with surrogate
+     * chars, and for texts ending in a line terminator if the pattern ends in
+     * '$'. Such texts need java.util.regex.
+     */
+    public boolean supports(CharSequence text){
+        int length = text.length();
+        if( mEndAnchored && length > 0 && isLineTerminator(text.charAt(length - 1)) ) return false;
+
+        for( int i=0; i<length; i++ ){
+            if( Character.isSurrogate(text.charAt(i)) ) return false;
+        }
+        return true;
+    }
+
+    static boolean isLineTerminator(char c){
+        return c == '\n' || c == '\r' || c == 0x85 || c == 0x2028 || c == 0x2029;
+    }
+
+    /**
+     * Finds the first match, like Matcher.find() from the start of the text.
+     * The text must be {@link #supports(CharSequence) supported}.
+     *
+     * @param range receives start and end of the match
+     * @return whether there is a match
+     */
+    public boolean find(CharSequence text, int[] range){
+        int length = text.length();
+
+        int start = 0;
+        if( mEndAnchored || !mStartAnchored ){
+            start = leftmostStart(text, length);
+            if( start < 0 || (mStartAnchored && start != 0) ) return false;
+        }
+
+        int end = length;
+        if( !mEndAnchored ){
+            end = forwardEnd(text, start, length);
+            if( end < 0 ) return false;
+        }
+
+        range[0] = start;
+        range[1] = end;
+        return true;
+    }
+
+    private int leftmostStart(CharSequence text, int length){
+        int[] delta = mReverseDelta;
+        boolean[] accept = mReverseAccept;
+
+        int state = 0;
+        int found = accept[state] ? length : -1;
+        for( int p=length-1; p>=0; p-- ){
+            char c = text.charAt(p);
+            state = delta[state * mClasses + (c < 128 ? mAsciiClass[c] : mAlphabet.classOf(c))];
+            if( state < 0 ) break;
+            if( accept[state] ) found = p;
+        }
+        return found;
+    }
+
+    private int forwardEnd(CharSequence text, int start, int length){
+        int[] delta = mForwardDelta;
+        boolean[] accept = mForwardAccept;
+
+        int state = 0;
+        int end = -1;
+        for( int p=start; ; p++ ){
+            if( accept[state] ) end = p;
+            if( p == length ) break;
+
+            char c = text.charAt(p);
+            state = delta[state * mClasses + (c < 128 ? mAsciiClass[c] : mAlphabet.classOf(c))];
+            if( state < 0 ) break;
+        }
+        return end;
+    }
+
+    @Override
+    public String toString(){
+        return mSource + " (" + getStateCount() + " states, " + mClasses + " char classes)";
+    }
+
+    /**
+     * Thrown for patterns that must be left to java.util.regex.
+     */
+    public static final class UnsupportedPatternException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public UnsupportedPatternException(String message){
+            super(message);
+        }
+    }
+
+    // ---- character sets ----
+
+    private static boolean contains(int[] set, int c){
+        for( int i=0; i<set.length; i+=2 ){
+            if( c >= set[i] && c <= set[i + 1] ) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sorts and merges ranges.
+     */
+    private static int[] normalize(int[] ranges, int length){
+        int pairs = length / 2;
+        long[] packed = new long[pairs];
+        for( int i=0; i<pairs; i++ ) packed[i] = ((long) ranges[2 * i] << 32) | ranges[2 * i + 1];
+        Arrays.sort(packed);
+
+        int[] set = new int[length];
+        int count = 0;
+        for( long range : packed ){
+            int first = (int) (range >>> 32);
+            int last = (int) range;
+            if( count > 0 && first <= set[count - 1] + 1 ){
+                set[count - 1] = Math.max(set[count - 1], last);
+            } else {
+                set[count++] = first;
+                set[count++] = last;
+            }
+        }
+        return Arrays.copyOf(set, count);
+    }
+
+    private static int[] complement(int[] set){
+        int[] result = new int[set.length + 2];
+        int count = 0;
+        int next = 0;
+        for( int i=0; i<set.length; i+=2 ){
+            if( set[i] > next ){
+                result[count++] = next;
+                result[count++] = set[i] - 1;
+            }
+            next = set[i + 1] + 1;
+        }
+        if( next <= Character.MAX_VALUE ){
+            result[count++] = next;
+            result[count++] = Character.MAX_VALUE;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Adds the other case of the ASCII letters in the set, which is what
+     * CASE_INSENSITIVE without UNICODE_CASE matches.
+     */
+    private static int[] caseFold(int[] set){
+        int[] ranges = Arrays.copyOf(set, set.length + 2 * 26);
+        int count = set.length;
+        for( char c='A'; c<='Z'; c++ ){
+            char lower = (char) (c + ('a' - 'A'));
+            if( contains(set, c) != contains(set, lower) ){
+                char other = contains(set, c) ? lower : c;
+                ranges[count++] = other;
+                ranges[count++] = other;
+            }
+        }
+        return count == set.length ? set : normalize(ranges, count);
+    }
+
+    // ---- parser ----
+
+    static final class Node {
+        static final int EMPTY = 0;
+        static final int SET = 1;
+        static final int CONCAT = 2;
+        static final int ALT = 3;
+        static final int REPEAT = 4;
+        static final int BOL = 5;
+        static final int EOL = 6;
+
+        final int kind;
+        int set;
+        List<Node> kids;
+        int min;
+        int max;
+        boolean lazy;
+
+        Node(int kind){
+            this.kind = kind;
+        }
+
+        Node(int kind, List<Node> kids){
+            this.kind = kind;
+            this.kids = kids;
+        }
+    }
+
+    static final class Parser {
+        private final String mRegex;
+        private final boolean mCaseInsensitive;
+        private int mPos;
+        final List<int[]> sets;             // may be shared by the parsers of several patterns
+
+        // result of parseAnchored()
+        Node root;
+        boolean startAnchored;
+        boolean endAnchored;
+
+        Parser(String regex, boolean caseInsensitive, List<int[]> sets){
+            mRegex = regex;
+            mCaseInsensitive = caseInsensitive;
+            this.sets = sets;
+        }
+
+        Node parse() throws UnsupportedPatternException {
+            Node node = alternation();
+            if( mPos < mRegex.length() ) throw unsupported("unbalanced ')'");
+            return node;
+        }
+
+        /**
+         * Parses the pattern into root, without a leading '^' and trailing '$'.
+         */
+        void parseAnchored() throws UnsupportedPatternException {
+            root = parse();
+
+            List<Node> items = root.kind == Node.CONCAT ? root.kids : new ArrayList<Node>(Arrays.asList(root));
+            if( !items.isEmpty() && items.get(0).kind == Node.BOL ){
+                startAnchored = true;
+                items.remove(0);
+            }
+            if( !items.isEmpty() && items.get(items.size() - 1).kind == Node.EOL ){
+                endAnchored = true;
+                items.remove(items.size() - 1);
+            }
+            if( root.kind != Node.CONCAT ) root = items.isEmpty() ? new Node(Node.EMPTY) : items.get(0);
+        }
+
+        private UnsupportedPatternException unsupported(String what){
+            return new UnsupportedPatternException(what + " at " + mPos);
+        }
+
+        private boolean more(){
+            return mPos < mRegex.length();
+        }
+
+        private char peek(){
+            return mRegex.charAt(mPos);
+        }
+
+        private char next() throws UnsupportedPatternException {
+            if( !more() ) throw unsupported("unexpected end");
+            return mRegex.charAt(mPos++);
+        }
+
+        private Node alternation() throws UnsupportedPatternException {
+            List<Node> alternatives = new ArrayList<Node>();
+            alternatives.add(concatenation());
+            while( more() && peek() == '|' ){
+                mPos++;
+                alternatives.add(concatenation());
+            }
+            return alternatives.size() == 1 ? alternatives.get(0) : new Node(Node.ALT, alternatives);
+        }
+
+        private Node concatenation() throws UnsupportedPatternException {
+            List<Node> items = new ArrayList<Node>();
+            while( more() && peek() != '|' && peek() != ')' ){
+                items.add(repetition());
+            }
+            if( items.isEmpty() ) return new Node(Node.EMPTY);
+            return items.size() == 1 ? items.get(0) : new Node(Node.CONCAT, items);
+        }
+
+        private Node repetition() throws UnsupportedPatternException {
+            Node atom = atom();
+            if( !more() ) return atom;
+
+            int min;
+            int max;
+            switch( peek() ){
+                case '?': min = 0; max = 1; break;
+                case '*': min = 0; max = INFINITE; break;
+                case '+': min = 1; max = INFINITE; break;
+                case '{':
+                    mPos++;
+                    min = number();
+                    max = min;
+                    if( more() && peek() == ',' ){
+                        mPos++;
+                        max = more() && peek() == '}' ? INFINITE : number();
+                    }
+                    if( !more() || peek() != '}' ) throw unsupported("bad repetition");
+                    break;
+                default:
+                    return atom;
+            }
+            mPos++;
+
+            if( atom.kind == Node.BOL || atom.kind == Node.EOL ) throw unsupported("repeated anchor");
+            if( max != INFINITE && max < min ) throw unsupported("bad repetition");
+            if( Math.max(min, max) > MAX_REPEAT ) throw unsupported("repetition count");
+
+            Node repeat = new Node(Node.REPEAT, new ArrayList<Node>(Arrays.asList(atom)));
+            repeat.min = min;
+            repeat.max = max;
+            if( more() && peek() == '?' ){
+                repeat.lazy = true;
+                mPos++;
+            } else if( more() && peek() == '+' ){
+                throw unsupported("possessive quantifier");
+            }
+            if( more() && "?*+{".indexOf(peek()) >= 0 ) throw unsupported("repeated quantifier");
+
+            return repeat;
+        }
+
+        private int number() throws UnsupportedPatternException {
+            int start = mPos;
+            int value = 0;
+            while( more() && peek() >= '0' && peek() <= '9' && mPos - start < 6 ){
+                value = value * 10 + (next() - '0');
+            }
+            if( mPos == start ) throw unsupported("bad repetition");
+            return value;
+        }
+
+        private Node atom() throws UnsupportedPatternException {
+            char c = next();
+            switch( c ){
+                case '(':
+                    return group();
+                case '[':
+                    return set(characterClass());
+                case '.':
+                    return set(DOT);
+                case '^':
+                    return new Node(Node.BOL);
+                case '$':
+                    return new Node(Node.EOL);
+                case '\\':
+                    return set(escape());
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                    throw unsupported("dangling quantifier");
+                default:
+                    return set(new int[] { c, c });
+            }
+        }
+
+        private Node group() throws UnsupportedPatternException {
+            if( more() && peek() == '?' ){
+                mPos++;
+                char c = next();
+                if( c == '<' && more() && Character.isLetter(peek()) ){
+                    // named group
+                    while( more() && Character.isLetterOrDigit(peek()) ) mPos++;
+                    if( next() != '>' ) throw unsupported("bad group name");
+                } else if( c != ':' ){
+                    throw unsupported("group construct (?" + c);
+                }
+            }
+
+            Node node = alternation();
+            if( !more() || next() != ')' ) throw unsupported("unclosed group");
+            return node;
+        }
+
+        private Node set(int[] ranges){
+            Node node = new Node(Node.SET);
+            node.set = sets.size();
+            sets.add(mCaseInsensitive ? caseFold(ranges) : ranges);
+            return node;
+        }
+
+        /**
+         * The chars of an escape sequence (after the '\').
+         */
+        private int[] escape() throws UnsupportedPatternException {
+            char c = next();
+            switch( c ){
+                case 'd': return DIGIT;
+                case 'D': return complement(DIGIT);
+                case 'w': return WORD;
+                case 'W': return complement(WORD);
+                case 's': return SPACE;
+                case 'S': return complement(SPACE);
+                case 't': return single('\t');
+                case 'n': return single('\n');
+                case 'r': return single('\r');
+                case 'f': return single('\f');
+                case 'a': return single('\u0007');
+                case 'e': return single('\u001B');
+                case 'x': return single(hex(2));
+                case 'u': return single(hex(4));
+                default:
+                    if( Character.isLetterOrDigit(c) ) throw unsupported("escape \\" + c);
+                    return single(c);
+            }
+        }
+
+        private static int[] single(int c){
+            return new int[] { c, c };
+        }
+
+        private int hex(int digits) throws UnsupportedPatternException {
+            int value = 0;
+            for( int i=0; i<digits; i++ ){
+                int digit = Character.digit(next(), 16);
+                if( digit < 0 ) throw unsupported("bad hex escape");
+                value = value * 16 + digit;
+            }
+            return value;
+        }
+
+        /**
+         * A [...] class (after the '['); case folding is done by set().
+         */
+        private int[] characterClass() throws UnsupportedPatternException {
+            boolean negate = false;
+            if( more() && peek() == '^' ){
+                negate = true;
+                mPos++;
+            }
+            if( more() && peek() == ']' ) throw unsupported("']' first in class");
+
+            int[] ranges = new int[16];
+            int count = 0;
+            int first = mPos;
+
+            while( true ){
+                char c = next();
+                if( c == ']' ) break;
+                if( c == '[' ) throw unsupported("nested class");
+                if( c == '&' && more() && peek() == '&' ) throw unsupported("class intersection");
+                if( c == '-' && mPos - 1 != first && more() && peek() != ']' ) throw unsupported("'-' in class");
+
+                int[] item = c == '\\' ? escape() : single(c);
+                if( item.length == 2 && item[0] == item[1] && more() && peek() == '-' && mPos + 1 < mRegex.length() && mRegex.charAt(mPos + 1) != ']' ){
+                    mPos++;
+                    char d = next();
+                    if( d == '[' ) throw unsupported("nested class");
+                    int[] last = d == '\\' ? escape() : single(d);
+                    if( last.length != 2 || last[0] != last[1] || last[0] < item[0] )
+                        throw unsupported("bad range");
+                    item = new int[] { item[0], last[0] };
+                }
+
+                if( count + item.length > ranges.length ) ranges = Arrays.copyOf(ranges, (count + item.length) * 2);
+                System.arraycopy(item, 0, ranges, count, item.length);
+                count += item.length;
+            }
+
+            int[] set = normalize(ranges, count);
+            if( mCaseInsensitive ) set = caseFold(set);
+            return negate ? complement(set) : set;
+        }
+    }
+
+    // ---- automata ----
+
+    /**
+     * Chars with the same membership in all sets of the patterns share a
+     * class, the DFA alphabet.
+     */
+    static final class Alphabet {
+        final char[] asciiClass = new char[128];
+        final int[] boundaries;             // first char of classes 1..n
+        final int classes;
+        final boolean[][] members;          // [set][class]
+
+        Alphabet(List<int[]> sets){
+            // class boundaries: every set starts and ends at one
+            int[] points = new int[sets.size() * 8 + 2];
+            int count = 0;
+            for( int[] set : sets ){
+                if( count + set.length >= points.length ) points = Arrays.copyOf(points, (count + set.length) * 2);
+                for( int i=0; i<set.length; i+=2 ){
+                    points[count++] = set[i];
+                    points[count++] = set[i + 1] + 1;
+                }
+            }
+            Arrays.sort(points, 0, count);
+            int unique = 0;
+            for( int i=0; i<count; i++ ){
+                if( points[i] > 0 && points[i] <= Character.MAX_VALUE && (unique == 0 || points[unique - 1] != points[i]) )
+                    points[unique++] = points[i];
+            }
+            boundaries = Arrays.copyOf(points, unique);
+            classes = unique + 1;
+            for( char c=0; c<128; c++ ) asciiClass[c] = (char) classOf(c);
+
+            members = new boolean[sets.size()][classes];
+            for( int s=0; s<sets.size(); s++ ){
+                for( int k=0; k<classes; k++ ){
+                    members[s][k] = contains(sets.get(s), k == 0 ? 0 : boundaries[k - 1]);
+                }
+            }
+        }
+
+        int classOf(char c){
+            int low = 0;
+            int high = boundaries.length;
+            while( low < high ){
+                int mid = (low + high) >>> 1;
+                if( boundaries[mid] <= c ) low = mid + 1; else high = mid;
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Thompson NFA over char classes; nodes are built back to front.
+     */
+    static final class Nfa {
+        static final int CHAR = 0;
+        static final int SPLIT = 1;
+        static final int MATCH = 2;
+
+        final boolean[][] members;      // [set][class]
+        final int classes;
+        int[] kind = new int[64];
+        int[] arg = new int[64];        // set of CHAR nodes
+        int[] out1 = new int[64];       // next node, preferred branch of SPLIT
+        int[] out2 = new int[64];
+        int size;
+
+        Nfa(Alphabet alphabet){
+            members = alphabet.members;
+            classes = alphabet.classes;
+        }
+
+        int add(int kind, int arg, int out1, int out2) throws UnsupportedPatternException {
+            if( size == MAX_NFA_NODES ) throw new UnsupportedPatternException("pattern too large");
+            if( size == this.kind.length ){
+                this.kind = Arrays.copyOf(this.kind, size * 2);
+                this.arg = Arrays.copyOf(this.arg, size * 2);
+                this.out1 = Arrays.copyOf(this.out1, size * 2);
+                this.out2 = Arrays.copyOf(this.out2, size * 2);
+            }
+            this.kind[size] = kind;
+            this.arg[size] = arg;
+            this.out1[size] = out1;
+            this.out2[size] = out2;
+            return size++;
+        }
+
+        /**
+         * A MATCH node for pattern number index.
+         */
+        int match(int index) throws UnsupportedPatternException {
+            return add(MATCH, index, -1, -1);
+        }
+
+        /**
+         * Builds the nodes of a subpattern followed by node next.
+         *
+         * @param reverse build the reversed pattern
+         * @return the first node
+         */
+        int compile(Node node, int next, boolean reverse) throws UnsupportedPatternException {
+            switch( node.kind ){
+                case Node.SET:
+                    return add(CHAR, node.set, next, -1);
+
+                case Node.CONCAT:
+                    for( int i=0; i<node.kids.size(); i++ ){
+                        next = compile(node.kids.get(reverse ? i : node.kids.size() - 1 - i), next, reverse);
+                    }
+                    return next;
+
+                case Node.ALT: {
+                    int n = node.kids.size();
+                    int first = compile(node.kids.get(n - 1), next, reverse);
+                    for( int i=n-2; i>=0; i-- ){
+                        first = add(SPLIT, 0, compile(node.kids.get(i), next, reverse), first);
+                    }
+                    return first;
+                }
+
+                case Node.REPEAT: {
+                    Node body = node.kids.get(0);
+                    int first;
+                    if( node.max == INFINITE ){
+                        int loop = add(SPLIT, 0, -1, -1);
+                        branch(loop, compile(body, loop, reverse), next, node.lazy);
+                        first = loop;
+                    } else {
+                        // x{2,4} is xx(x(x)?)?
+                        first = next;
+                        for( int i=node.min; i<node.max; i++ ){
+                            int split = add(SPLIT, 0, -1, -1);
+                            branch(split, compile(body, first, reverse), next, node.lazy);
+                            first = split;
+                        }
+                    }
+                    for( int i=0; i<node.min; i++ ){
+                        first = compile(body, first, reverse);
+                    }
+                    return first;
+                }
+
+                default:
+                    return next;
+            }
+        }
+
+        private void branch(int split, int body, int skip, boolean lazy){
+            out1[split] = lazy ? skip : body;
+            out2[split] = lazy ? body : skip;
+        }
+    }
+
+    /**
+     * Subset construction. A DFA state is the list of CHAR and MATCH nodes
+     * reachable without reading a char, either
+     * <ul>
+     * <li>ordered: in the order a backtracking matcher tries them, cut after
+     * the first MATCH since the threads behind it can no longer win,</li>
+     * <li>or as a set.</li>
+     * </ul>
+     * State 0 is the start state, from the start nodes; the injected nodes
+     * are added again at every char for unanchored searches.
+     */
+    static final class Builder {
+        private final Nfa mNfa;
+        private final boolean mOrdered;
+        private final int mMaxStates;
+
+        private final int[] mVisited;
+        private int mStamp;
+        private final int[] mStack;
+        private int[] mList;
+        private int mCount;
+
+        private final Map<String, Integer> mIds = new HashMap<String, Integer>();
+        private final List<int[]> mStates = new ArrayList<int[]>();
+
+        int[] delta;                        // [state * classes + class], -1 if dead
+        boolean[] accept;
+        long[] matches;                     // bit i: MATCH node of pattern i reached
+
+        Builder(Nfa nfa, int[] starts, int[] injected, int maxStates, boolean ordered)
+                throws UnsupportedPatternException {
+            mNfa = nfa;
+            mOrdered = ordered;
+            mMaxStates = maxStates;
+            mVisited = new int[nfa.size];
+            mStack = new int[nfa.size * 2 + 2];
+            mList = new int[nfa.size];
+            int classes = nfa.classes;
+
+            mStamp++;
+            mCount = 0;
+            for( int start : starts ) closure(start);
+            idOf(finish());
+
+            delta = new int[16 * classes];
+            for( int s=0; s<mStates.size(); s++ ){
+                int[] list = mStates.get(s);
+                for( int k=0; k<classes; k++ ){
+                    mStamp++;
+                    mCount = 0;
+                    for( int node : list ){
+                        if( nfa.kind[node] == Nfa.CHAR && nfa.members[nfa.arg[node]][k] ) closure(nfa.out1[node]);
+                    }
+                    for( int start : injected ) closure(start);
+
+                    int target = mCount == 0 ? -1 : idOf(finish());
+                    if( (s + 1) * classes > delta.length ) delta = Arrays.copyOf(delta, delta.length * 2);
+                    delta[s * classes + k] = target;
+                }
+            }
+            delta = Arrays.copyOf(delta, mStates.size() * classes);
+
+            accept = new boolean[mStates.size()];
+            matches = new long[mStates.size()];
+            for( int s=0; s<accept.length; s++ ){
+                for( int node : mStates.get(s) ){
+                    if( nfa.kind[node] == Nfa.MATCH ){
+                        accept[s] = true;
+                        matches[s] |= 1L << nfa.arg[node];
+                    }
+                }
+            }
+        }
+
+        /**
+         * Appends the nodes reachable from node, depth first in branch order.
+         */
+        private void closure(int node){
+            int top = 0;
+            mStack[top++] = node;
+            while( top > 0 ){
+                int n = mStack[--top];
+                if( mVisited[n] == mStamp ) continue;
+                mVisited[n] = mStamp;
+
+                if( mNfa.kind[n] == Nfa.SPLIT ){
+                    mStack[top++] = mNfa.out2[n];
+                    mStack[top++] = mNfa.out1[n];
+                } else {
+                    mList[mCount++] = n;
+                }
+            }
+        }
+
+        private int[] finish(){
+            int count = mCount;
+            if( mOrdered ){
+                for( int i=0; i<count; i++ ){
+                    if( mNfa.kind[mList[i]] == Nfa.MATCH ){
+                        count = i + 1;
+                        break;
+                    }
+                }
+            } else {
+                Arrays.sort(mList, 0, count);
+            }
+            return Arrays.copyOf(mList, count);
+        }
+
+        private int idOf(int[] list) throws UnsupportedPatternException {
+            char[] chars = new char[list.length];
+            for( int i=0; i<list.length; i++ ) chars[i] = (char) list[i];
+            String key = new String(chars);
+
+            Integer id = mIds.get(key);
+            if( id != null ) return id;
+
+            if( mStates.size() == mMaxStates )
+                throw new UnsupportedPatternException("more than " + mMaxStates + " DFA states");
+            mIds.put(key, mStates.size());
+            mStates.add(list);
+            return mStates.size() - 1;
+        }
+    }
+}
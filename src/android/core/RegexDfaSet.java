@@ -0,0 +1,128 @@
+package com.creative.informatics.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Up to 64 patterns of the {@link RegexDfa} subset, searched in one pass:
+ * tells which of them Pattern.compile(regex).matcher(text).find() would find
+ * in a text. All patterns share one unanchored DFA, so the cost per text does
+ * not grow with the number of patterns.
+ *
+ * Texts with surrogate chars, and texts ending in a line terminator if a
+ * pattern ends in '$', are not {@link #supports(CharSequence) supported}.
+ *
+ * An instance is immutable and may be shared by threads.
+ */
+public final class RegexDfaSet {
+    public static final int MAX_PATTERNS = 64;
+
+    private final String[] mSources;
+    private final long mEndAnchored;            // patterns that only match at the end of the text
+    private final boolean mAnyEndAnchored;
+    private final RegexDfa.Alphabet mAlphabet;
+    private final int mClasses;
+    private final int[] mDelta;
+    private final long[] mMatches;
+
+    private RegexDfaSet(List<String> regexes, boolean caseInsensitive, int maxStates)
+            throws RegexDfa.UnsupportedPatternException {
+        if( regexes.size() > MAX_PATTERNS ) throw new RegexDfa.UnsupportedPatternException("more than " + MAX_PATTERNS + " patterns");
+
+        mSources = regexes.toArray(new String[regexes.size()]);
+        List<int[]> sets = new ArrayList<int[]>();
+        RegexDfa.Parser[] parsers = new RegexDfa.Parser[mSources.length];
+        long endAnchored = 0;
+        for( int i=0; i<mSources.length; i++ ){
+            parsers[i] = new RegexDfa.Parser(mSources[i], caseInsensitive, sets);
+            parsers[i].parseAnchored();
+            RegexDfa.check(parsers[i].root);
+            if( parsers[i].endAnchored ) endAnchored |= 1L << i;
+        }
+        mEndAnchored = endAnchored;
+        mAnyEndAnchored = endAnchored != 0;
+
+        mAlphabet = new RegexDfa.Alphabet(sets);
+        mClasses = mAlphabet.classes;
+
+        // every pattern starts at 0, those not anchored there also at every later char
+        RegexDfa.Nfa nfa = new RegexDfa.Nfa(mAlphabet);
+        int[] starts = new int[mSources.length];
+        int[] injected = new int[mSources.length];
+        int floating = 0;
+        for( int i=0; i<mSources.length; i++ ){
+            starts[i] = nfa.compile(parsers[i].root, nfa.match(i), false);
+            if( !parsers[i].startAnchored ) injected[floating++] = starts[i];
+        }
+        int[] later = new int[floating];
+        System.arraycopy(injected, 0, later, 0, floating);
+
+        RegexDfa.Builder builder = new RegexDfa.Builder(nfa, starts, later, maxStates, false);
+        mDelta = builder.delta;
+        mMatches = builder.matches;
+    }
+
+    /**
+     * Compiles patterns, matched as Pattern.compile(regex) would, or as
+     * Pattern.compile("(?i:" + regex + ")") if caseInsensitive.
+     */
+    public static RegexDfaSet compile(List<String> regexes, boolean caseInsensitive, int maxStates)
+            throws RegexDfa.UnsupportedPatternException {
+        return new RegexDfaSet(regexes, caseInsensitive, maxStates);
+    }
+
+    public int size(){
+        return mSources.length;
+    }
+
+    public String getSource(int index){
+        return mSources[index];
+    }
+
+    public int getStateCount(){
+        return mMatches.length;
+    }
+
+    /**
+     * Whether find methods can search the text, see {@link RegexDfa#supports}.
+     */
+    public boolean supports(CharSequence text){
+        int length = text.length();
+        if( mAnyEndAnchored && length > 0 && RegexDfa.isLineTerminator(text.charAt(length - 1)) ) return false;
+
+        for( int i=0; i<length; i++ ){
+            if( Character.isSurrogate(text.charAt(i)) ) return false;
+        }
+        return true;
+    }
+
+    /**
+     * The patterns found in the text, bit i for pattern number i.
+     */
+    public long findAll(CharSequence text){
+        int state = 0;
+        long found = mMatches[state] & ~mEndAnchored;
+        int length = text.length();
+
+        for( int p=0; p<length; p++ ){
+            char c = text.charAt(p);
+            state = mDelta[state * mClasses + (c < 128 ? mAlphabet.asciiClass[c] : mAlphabet.classOf(c))];
+            if( state < 0 ) return found;
+            found |= mMatches[state] & ~mEndAnchored;
+        }
+        return found | (mMatches[state] & mEndAnchored);
+    }
+
+    /**
+     * The lowest numbered pattern found in the text, -1 if none.
+     */
+    public int findFirst(CharSequence text){
+        long found = findAll(text);
+        return found == 0 ? -1 : Long.numberOfTrailingZeros(found);
+    }
+
+    @Override
+    public String toString(){
+        return "patterns=" + mSources.length + " states=" + getStateCount() + " classes=" + mClasses;
+    }
+}
@@ -0,0 +1,95 @@
+package com.creative.informatics.core;
+
+/**
+ * The last readings of one field, voting for its value: the value read most
+ * often among the last {@link #getCapacity()} readings wins, the most recent
+ * one of equally often read values. The confidence of the winner is its
+ * share of a full buffer, so it takes several agreeing readings to become
+ * confident and a single misread cannot replace it.
+ */
+public final class ValueConsensus {
+    private final String[] mValues;
+    private final int[] mPatterns;                  // pattern that found each value
+    private int mCount;
+    private int mNext;                              // slot of the next reading
+
+    private String mValue;                          // the winner, null if no readings
+    private int mPattern = -1;
+    private int mVotes;
+
+    public ValueConsensus(int capacity){
+        if( capacity < 1 ) throw new IllegalArgumentException("capacity " + capacity);
+        mValues = new String[capacity];
+        mPatterns = new int[capacity];
+    }
+
+    public int getCapacity(){
+        return mValues.length;
+    }
+
+    /**
+     * Adds a reading, dropping the oldest one of a full buffer.
+     *
+     * @return whether the winning value changed
+     */
+    public boolean add(String value, int pattern){
+        mValues[mNext] = value;
+        mPatterns[mNext] = pattern;
+        mNext = (mNext + 1) % mValues.length;
+        if( mCount < mValues.length ) mCount++;
+
+        String previous = mValue;
+        vote();
+        return !mValue.equals(previous);
+    }
+
+    // the buffer is a few readings long, counting is cheaper than keeping counts
+    private void vote(){
+        mValue = null;
+        mVotes = 0;
+        for( int k=1; k<=mCount; k++ ){
+            int slot = (mNext - k + mValues.length) % mValues.length;     // newest first
+            String value = mValues[slot];
+            int votes = 0;
+            for( int j=0; j<mCount; j++ ){
+                if( value.equals(mValues[j]) ) votes++;
+            }
+            if( votes > mVotes ){
+                mValue = value;
+                mPattern = mPatterns[slot];
+                mVotes = votes;
+            }
+        }
+    }
+
+    /**
+     * The winning value, null if there are no readings.
+     */
+    public String getValue(){
+        return mValue;
+    }
+
+    /**
+     * The pattern that found the winning value in its latest reading.
+     */
+    public int getPattern(){
+        return mPattern;
+    }
+
+    /**
+     * The share of a full buffer of readings agreeing on the winning value,
+     * from 0 to 1.
+     */
+    public float getConfidence(){
+        return (float) mVotes / mValues.length;
+    }
+
+    public void clear(){
+        for( int i=0; i<mValues.length; i++ ) mValues[i] = null;
+        mCount = 0;
+        mNext = 0;
+        mValue = null;
+        mPattern = -1;
+        mVotes = 0;
+    }
+}
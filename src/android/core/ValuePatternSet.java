@@ -0,0 +1,253 @@
+package com.creative.informatics.core;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The value patterns of a dictionary entry, compiled once.
+ *
+ * Every pattern is matched case-insensitively and its first match (as found
+ * by Matcher.find()) is a candidate; the longest non-empty candidate wins, on
+ * equal length the pattern listed first. The matchers are reused, so an
+ * instance must only be used by one thread at a time.
+ *
+ * Dictionaries come from JS, and a pattern like "(a+)+b" makes a backtracking
+ * matcher take exponential time on some texts. In linear time mode the
+ * patterns {@link RegexDfa} supports are matched by it instead, with the same
+ * results. The others are still matched by java.util.regex, and a match that
+ * takes longer than the time limit is abandoned: the pattern then counts as
+ * not matching the text.
+ *
+ * Before either, a {@link CharPrefilter} rejects texts that lack chars every
+ * match needs (a digit, '$', '@', ...), so most OCR texts need no regex work
+ * at all.
+ */
+public final class ValuePatternSet {
+    private static final String TAG = ValuePatternSet.class.getSimpleName();
+
+    private final String[] mSources;
+    private final Matcher[] mMatchers;          // null for patterns that do not compile
+    private final RegexDfa[] mDfas;             // null for patterns left to java.util.regex
+    private final String[] mFallbackReasons;    // why a pattern has no DFA
+    private final CharPrefilter[] mPrefilters;  // null for patterns without required chars
+    private final CharPrefilter.Chars mChars = new CharPrefilter.Chars();
+    private final long mTimeLimit;              // nanoseconds, 0 for none
+    private final DeadlineText mDeadlineText = new DeadlineText();
+    private final int[] mRange = new int[2];
+    private int mTimeouts;
+    private long mChecks;                       // pattern/text pairs to match
+    private long mPrefiltered;                  // ... rejected by the prefilter
+
+    public ValuePatternSet(List<String> patterns){
+        this(patterns, false, 0);
+    }
+
+    /**
+     * @param linearTime match the patterns RegexDfa supports with it
+     * @param timeLimitMillis time limit of a java.util.regex match, 0 for none
+     */
+    public ValuePatternSet(List<String> patterns, boolean linearTime, long timeLimitMillis){
+        mSources = patterns.toArray(new String[patterns.size()]);
+        mMatchers = new Matcher[mSources.length];
+        mDfas = new RegexDfa[mSources.length];
+        mFallbackReasons = new String[mSources.length];
+        mPrefilters = new CharPrefilter[mSources.length];
+        mTimeLimit = timeLimitMillis * 1000000L;
+
+        for( int i=0; i<mSources.length; i++ ){
+            try {
+                mMatchers[i] = Pattern.compile("(?i:" + mSources[i] + ")").matcher("");
+            } catch (PatternSyntaxException e) {
+                EngineLog.e(TAG, "invalid value pattern: " + mSources[i] + " (" + e.getDescription() + ")");
+                continue;
+            }
+            mPrefilters[i] = CharPrefilter.compile(mSources[i], true);
+
+            if( !linearTime ) continue;
+            try {
+                mDfas[i] = RegexDfa.compile(mSources[i], true, RegexDfa.DEFAULT_MAX_STATES);
+            } catch (RegexDfa.UnsupportedPatternException e) {
+                mFallbackReasons[i] = e.getMessage();
+            }
+        }
+    }
+
+    public int size(){
+        return mSources.length;
+    }
+
+    public String getSource(int index){
+        return mSources[index];
+    }
+
+    /**
+     * Whether a pattern is matched in linear time.
+     */
+    public boolean isLinearTime(int index){
+        return mDfas[index] != null;
+    }
+
+    /**
+     * Why a pattern is matched by java.util.regex in linear time mode, null
+     * if it is not.
+     */
+    public String getFallbackReason(int index){
+        return mFallbackReasons[index];
+    }
+
+    /**
+     * Number of pattern/text pairs matched, including those the prefilter
+     * rejected.
+     */
+    public long getCheckCount(){
+        return mChecks;
+    }
+
+    /**
+     * Number of pattern/text pairs the prefilter rejected without matching.
+     */
+    public long getPrefilteredCount(){
+        return mPrefiltered;
+    }
+
+    /**
+     * Number of java.util.regex matches abandoned at the time limit.
+     */
+    public int getTimeoutCount(){
+        return mTimeouts;
+    }
+
+    /**
+     * The longest match of all patterns in the text, null if no pattern
+     * matches a non-empty part of it.
+     */
+    public Match match(CharSequence text){
+        String value = null;
+        int index = -1;
+        boolean summarized = false;
+
+        for( int i=0; i<mMatchers.length; i++ ){
+            Matcher matcher = mMatchers[i];
+            if( matcher == null ) continue;
+
+            mChecks++;
+            if( mPrefilters[i] != null ){
+                if( !summarized ){
+                    mChars.set(text);
+                    summarized = true;
+                }
+                if( !mPrefilters[i].mayMatch(mChars) ){
+                    mPrefiltered++;
+                    continue;
+                }
+            }
+
+            RegexDfa dfa = mDfas[i];
+            if( dfa != null && dfa.supports(text) ){
+                if( dfa.find(text, mRange) && mRange[1] - mRange[0] > (value == null ? 0 : value.length()) ){
+                    value = text.subSequence(mRange[0], mRange[1]).toString();
+                    index = i;
+                }
+                continue;
+            }
+
+            try {
+                matcher.reset(mTimeLimit > 0 ? mDeadlineText.start(text, mTimeLimit) : text);
+                if( matcher.find() ){
+                    int length = matcher.end() - matcher.start();
+                    if( length > (value == null ? 0 : value.length()) ){
+                        value = matcher.group();
+                        index = i;
+                    }
+                }
+            } catch (MatchTimeoutException e) {
+                mTimeouts++;
+            }
+        }
+        matchersDone();
+
+        return value == null ? null : new Match(value, index);
+    }
+
+    private void matchersDone(){
+        // do not keep the last text alive through the matchers
+        for( Matcher matcher : mMatchers ){
+            if( matcher != null ) matcher.reset("");
+        }
+        mDeadlineText.start("", 0);
+    }
+
+    @Override
+    public String toString(){
+        int linear = 0;
+        StringBuilder fallbacks = new StringBuilder();
+        for( int i=0; i<mSources.length; i++ ){
+            if( mDfas[i] != null ) linear++;
+            if( mFallbackReasons[i] != null ) fallbacks.append(" [").append(mSources[i]).append(": ").append(mFallbackReasons[i]).append(']');
+        }
+        return "patterns=" + mSources.length + " linear=" + linear + " timeouts=" + mTimeouts
+                + " prefiltered=" + mPrefiltered + "/" + mChecks + fallbacks;
+    }
+
+    /**
+     * The text handed to java.util.regex, checking the clock every few
+     * hundred chars read and giving up after the deadline.
+     */
+    private static final class DeadlineText implements CharSequence {
+        private static final int CHECK_INTERVAL = 256;
+
+        private CharSequence mText = "";
+        private long mDeadline;
+        private int mCountdown;
+
+        DeadlineText start(CharSequence text, long timeLimit){
+            mText = text;
+            mDeadline = System.nanoTime() + timeLimit;
+            mCountdown = CHECK_INTERVAL;
+            return this;
+        }
+
+        @Override
+        public char charAt(int index){
+            if( --mCountdown < 0 ){
+                mCountdown = CHECK_INTERVAL;
+                if( System.nanoTime() - mDeadline > 0 ) throw new MatchTimeoutException();
+            }
+            return mText.charAt(index);
+        }
+
+        @Override
+        public int length(){
+            return mText.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end){
+            return mText.subSequence(start, end);
+        }
+
+        @Override
+        public String toString(){
+            return mText.toString();
+        }
+    }
+
+    private static final class MatchTimeoutException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * A matched value and the index of the pattern that matched it.
+     */
+    public static final class Match {
+        public final String value;
+        public final int patternIndex;
+
+        public Match(String value, int patternIndex){
+            this.value = value;
+            this.patternIndex = patternIndex;
+        }
+    }
+}
@@ -26,5 +26,13 @@ package de.zedlitz.phonet4java;
  */
 public interface Coder {
     String code(final String input);
+
+    /**
+     * Append the code of input[start, end) to out. The result is the same as
+     * code(input.subSequence(start, end).toString()), but coders do not
+     * create intermediate Strings for it.
+     */
+    void code(final CharSequence input, final int start, final int end, final StringBuilder out);
+
     String getEngineId();
 }
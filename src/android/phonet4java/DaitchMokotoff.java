@@ -20,12 +20,17 @@
  */
 package de.zedlitz.phonet4java;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
 
 /**
  * @author Jesper Zedlitz &lt;jze@informatik.uni-kiel.de&gt;
  *
  */
-public class DaitchMokotoff implements Coder {
+public class DaitchMokotoff implements KeyCoder {
     private static final String[] daimok_rules =
         {
             "ZSCH", "4", "4", "4", "ZSH", "4", "4", "4", "TCH", "4", "4", "4",
@@ -70,68 +75,515 @@ public class DaitchMokotoff implements Coder {
             " ", "", "", "", "", "", "", ""
         };
 
+    /*
+     * Second reading of ambiguous sounds. A rule listed here produces two
+     * codes in codeAll(): one with the sounds of daimok_rules and one with
+     * these.
+     */
+    private static final String[] daimok_alternates =
+        {
+            "CH", "4", "4", "4", "CK", "45", "45", "45", "C", "4", "4", "4",
+            "J", "4", "4", "4", "RZ", "4", "4", "4", "RS", "4", "4", "4"
+        };
+
+    /** Default limit for the number of codes produced by codeAll(). */
+    public static final int DEFAULT_MAX_BRANCHES = 16;
+
+    private static final int CODE_LENGTH = 6;
+
+    /* rules compiled into a trie indexed by the first character */
+    private static final int[] charColumn = new int[256];
+    private static final int[][] trie;
+    private static final int[] trieRule;
+
+    /* per rule: length and sound ids at the beginning, before a vowel, otherwise */
+    private static final int[] ruleLength;
+    private static final int[] soundAtStart;
+    private static final int[] soundBeforeVowel;
+    private static final int[] soundOtherwise;
+    private static final int[] alternateAtStart;
+    private static final int[] alternateBeforeVowel;
+    private static final int[] alternateOtherwise;
+    private static final char[][] sounds;
+
+    private static final ThreadLocal<Branches> BRANCHES = new ThreadLocal<Branches>() {
+        @Override
+        protected Branches initialValue() {
+            return new Branches();
+        }
+    };
+
+    private int maxBranches = DEFAULT_MAX_BRANCHES;
+
+    static {
+        int ruleCount = 0;
+
+        while (daimok_rules[ruleCount * 4].length() > 0) {
+            ruleCount++;
+        }
+
+        int columns = 1;
+        int nodes = 1;
+
+        for (int r = 0; r < ruleCount; r++) {
+            String rule = daimok_rules[r * 4];
+
+            for (int i = 0; i < rule.length(); i++) {
+                if (charColumn[rule.charAt(i)] == 0) {
+                    charColumn[rule.charAt(i)] = columns++;
+                }
+            }
+
+            nodes += rule.length();
+        }
+
+        int[][] nextNode = new int[nodes][columns];
+        int[] nodeRule = new int[nodes];
+        Arrays.fill(nodeRule, -1);
+
+        List<String> soundList = new ArrayList<String>();
+        ruleLength = new int[ruleCount];
+        soundAtStart = new int[ruleCount];
+        soundBeforeVowel = new int[ruleCount];
+        soundOtherwise = new int[ruleCount];
+        alternateAtStart = new int[ruleCount];
+        alternateBeforeVowel = new int[ruleCount];
+        alternateOtherwise = new int[ruleCount];
+        Arrays.fill(alternateAtStart, -1);
+        Arrays.fill(alternateBeforeVowel, -1);
+        Arrays.fill(alternateOtherwise, -1);
+
+        int used = 1;
+
+        for (int r = 0; r < ruleCount; r++) {
+            String rule = daimok_rules[r * 4];
+            int node = 0;
+
+            for (int i = 0; i < rule.length(); i++) {
+                int column = charColumn[rule.charAt(i)];
+
+                if (nextNode[node][column] == 0) {
+                    nextNode[node][column] = used++;
+                }
+
+                node = nextNode[node][column];
+            }
+
+            /* a duplicated rule never matched in the list, keep the first one */
+            if (nodeRule[node] < 0) {
+                nodeRule[node] = r;
+            }
+
+            ruleLength[r] = rule.length();
+            soundAtStart[r] = soundId(soundList, daimok_rules[(r * 4) + 1]);
+            soundBeforeVowel[r] = soundId(soundList, daimok_rules[(r * 4) + 2]);
+            soundOtherwise[r] = soundId(soundList, daimok_rules[(r * 4) + 3]);
+        }
+
+        for (int a = 0; a < daimok_alternates.length; a += 4) {
+            int r = 0;
+
+            while (!daimok_rules[r * 4].equals(daimok_alternates[a])) {
+                r++;
+            }
+
+            alternateAtStart[r] = soundId(soundList, daimok_alternates[a + 1]);
+            alternateBeforeVowel[r] = soundId(soundList, daimok_alternates[a + 2]);
+            alternateOtherwise[r] = soundId(soundList, daimok_alternates[a + 3]);
+        }
+
+        trie = nextNode;
+        trieRule = nodeRule;
+        sounds = new char[soundList.size()][];
+
+        for (int i = 0; i < sounds.length; i++) {
+            sounds[i] = soundList.get(i).toCharArray();
+        }
+    }
+
+    private static int soundId(final List<String> soundList, final String sound) {
+        int id = soundList.indexOf(sound);
+
+        if (id < 0) {
+            id = soundList.size();
+            soundList.add(sound);
+        }
+
+        return id;
+    }
+
+    /**
+     * Find the rule that matches the upper-cased <code>in</code> at position pos. This is the
+     * longest one, except for the few rules that are shadowed by a shorter rule
+     * listed before them (e.g. "TTS" before "TTSZ"): like the linear scan this
+     * returns the first matching rule of the list.
+     *
+     * @return the rule number or -1 if no rule matches
+     */
+    private static int match(final CharSequence in, final int pos, final int end) {
+        int node = 0;
+        int result = -1;
+
+        for (int i = pos; i < end; i++) {
+            char c = Character.toUpperCase(in.charAt(i));
+
+            if ((c >= charColumn.length) || (charColumn[c] == 0)) {
+                break;
+            }
+
+            node = trie[node][charColumn[c]];
+
+            if (node == 0) {
+                break;
+            }
+
+            if ((trieRule[node] >= 0) && ((result < 0) || (trieRule[node] < result))) {
+                result = trieRule[node];
+            }
+        }
+
+        return result;
+    }
+
+    private static boolean isVowel(final CharSequence in, final int pos) {
+        char c = Character.toUpperCase(in.charAt(pos));
+
+        return (c == 'A') || (c == 'E') || (c == 'I') || (c == 'O') || (c == 'U');
+    }
+
+    /**
+     * Same as input.subSequence(start, end).toString().trim().length() == 0.
+     */
+    private static boolean isBlank(final CharSequence input, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (input.charAt(i) > ' ') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if input[start, end) can be upper-cased char by char, i.e. it
+     * contains no char that becomes several chars (like 'ß' to "SS").
+     */
+    private static boolean isUpperCasedPerChar(final CharSequence input, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            char c = input.charAt(i);
+
+            if ((c >= '\u00DF') && (Character.isSurrogate(c) ||
+                    (Character.isLowerCase(c) && (Character.toUpperCase(c) == c)))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static String toUpperCase(final CharSequence input, final int start, final int end) {
+        return input.subSequence(start, end).toString().toUpperCase(Locale.ROOT);
+    }
+
     /**
       * @see Coder#code(java.lang.String)
       */
     public String code(final String input) {
-        if ((input == null) || input.trim().length() == 0) {
-            return "000000";
-        }
-
-        int i;
-        int n = 0;
-        int pos = 0;
-        String sound;
-        String lastSound = null;
-        StringBuilder result = new StringBuilder();
-
-        String in = input.toUpperCase() + "*";
-
-        while ((daimok_rules[n].length() > 0) && (in.length() > 0)) {
-            if (in.regionMatches(pos, daimok_rules[n], 0,
-                        daimok_rules[n].length())) {
-                /* check the position of the sound */
-                if (pos == 0) {
-                    /* the beginning */
-                    sound = daimok_rules[n + 1];
-                    pos = pos + daimok_rules[n].length();
+        if (input == null) {
+            return DaitchMokotoffCodes.format(0);
+        }
+
+        return DaitchMokotoffCodes.format(encode(input, 0, input.length()));
+    }
+
+    /**
+      * @see Coder#code(java.lang.CharSequence, int, int, java.lang.StringBuilder)
+      */
+    public void code(final CharSequence input, final int start, final int end,
+        final StringBuilder out) {
+        out.append(DaitchMokotoffCodes.format(encode(input, start, end)));
+    }
+
+    /**
+     * The key of a Daitch-Mokotoff code is its int value as used by
+     * {@link DaitchMokotoffCodes}, e.g. 54800 for "054800".
+     *
+     * @see KeyCoder#key(java.lang.String)
+     */
+    public long key(final String input) {
+        if (input == null) {
+            return 0;
+        }
+
+        return encode(input, 0, input.length());
+    }
+
+    /**
+      * @see KeyCoder#key(java.lang.CharSequence, int, int)
+      */
+    public long key(final CharSequence input, final int start, final int end) {
+        return encode(input, start, end);
+    }
+
+    private static int encode(final CharSequence input, final int start, final int end) {
+        if (isBlank(input, start, end)) {
+            return 0;
+        }
+
+        if (!isUpperCasedPerChar(input, start, end)) {
+            String in = toUpperCase(input, start, end);
+
+            return encodeUpperCased(in, 0, in.length());
+        }
+
+        return encodeUpperCased(input, start, end);
+    }
+
+    /**
+     * Encode in[start, end), which must not contain chars that become several
+     * chars when upper-cased.
+     */
+    private static int encodeUpperCased(final CharSequence in, final int start, final int end) {
+        int result = 0;
+        int length = 0;
+        int pos = start;
+        int sound;
+        int lastSound = -1;
+
+        /* stop at the first character no rule matches, the end included */
+        for (int rule = match(in, pos, end); (rule >= 0) && (length < CODE_LENGTH);
+             rule = match(in, pos, end)) {
+            /* check the position of the sound */
+            if (pos == start) {
+                /* the beginning */
+                sound = soundAtStart[rule];
+                pos = pos + ruleLength[rule];
+            } else {
+                pos = pos + ruleLength[rule];
+
+                if ((pos < end) && isVowel(in, pos)) {
+                    /* vor einem Vokal */
+                    sound = soundBeforeVowel[rule];
                 } else {
-                    pos = pos + daimok_rules[n].length();
-
-                    if ((in.charAt(pos) == 'A') || (in.charAt(pos) == 'E') ||
-                            (in.charAt(pos) == 'I') || (in.charAt(pos) == 'O') ||
-                            (in.charAt(pos) == 'U')) {
-                        /* vor einem Vokal */
-                        sound = daimok_rules[n + 2];
-                    } else {
-                        sound = daimok_rules[n + 3];
-                    }
+                    sound = soundOtherwise[rule];
                 }
+            }
+
+            if (sound != lastSound) {
+                char[] digits = sounds[sound];
 
-                if (!sound.equals(lastSound)) {
-                    result.append(sound);
-                    lastSound = sound;
+                for (int i = 0; (i < digits.length) && (length < CODE_LENGTH); i++) {
+                    result = (result * 10) + (digits[i] - '0');
+                    length++;
                 }
 
-                n = 0;
-            } else {
-                n = n + 4; /* jump to next rule */
+                lastSound = sound;
             }
         }
 
-        if (result.length() > 6) {
-            result.setLength(6);
-        } else {
-            for (i = result.length(); i < 6; i++) {
-                result.append(0);
+        while (length < CODE_LENGTH) {
+            result *= 10;
+            length++;
+        }
+
+        return result;
+    }
+
+    /**
+     * Set the maximum number of codes {@link #codeAll(String, DaitchMokotoffCodes)}
+     * produces. Once the limit is reached ambiguous sounds only follow their
+     * first reading.
+     */
+    public void setMaxBranches(final int maxBranches) {
+        this.maxBranches = Math.max(1, maxBranches);
+    }
+
+    public int getMaxBranches() {
+        return maxBranches;
+    }
+
+    /**
+     * Encode the input with every reading of ambiguous sounds such as "CH"
+     * (5 or 4) or "CK" (5 or 45). The code returned by {@link #code(String)}
+     * is always part of the result.
+     *
+     * @param input the text to encode
+     * @param out the set that receives the codes, it is cleared first
+     * @return the number of codes
+     */
+    public int codeAll(final String input, final DaitchMokotoffCodes out) {
+        if (input == null) {
+            out.clear();
+            out.add(0);
+            return out.size();
+        }
+
+        return codeAll(input, 0, input.length(), out);
+    }
+
+    /**
+     * Encode input[start, end) with every reading of ambiguous sounds, see
+     * {@link #codeAll(String, DaitchMokotoffCodes)}.
+     */
+    public int codeAll(final CharSequence input, final int start, final int end,
+        final DaitchMokotoffCodes out) {
+        out.clear();
+
+        if (isBlank(input, start, end)) {
+            out.add(0);
+            return out.size();
+        }
+
+        if (!isUpperCasedPerChar(input, start, end)) {
+            String in = toUpperCase(input, start, end);
+
+            return codeAllUpperCased(in, 0, in.length(), out);
+        }
+
+        return codeAllUpperCased(input, start, end, out);
+    }
+
+    private int codeAllUpperCased(final CharSequence in, final int start, final int end,
+        final DaitchMokotoffCodes out) {
+        Branches branches = BRANCHES.get();
+        branches.reset(maxBranches);
+
+        int pos = start;
+
+        /* stop at the first character no rule matches, the end included */
+        for (int rule = match(in, pos, end); (rule >= 0) && !branches.isComplete();
+             rule = match(in, pos, end)) {
+            int sound;
+            int alternate;
+
+            /* check the position of the sound */
+            if (pos == start) {
+                /* the beginning */
+                sound = soundAtStart[rule];
+                alternate = alternateAtStart[rule];
+                pos = pos + ruleLength[rule];
+            } else {
+                pos = pos + ruleLength[rule];
+
+                if ((pos < end) && isVowel(in, pos)) {
+                    /* vor einem Vokal */
+                    sound = soundBeforeVowel[rule];
+                    alternate = alternateBeforeVowel[rule];
+                } else {
+                    sound = soundOtherwise[rule];
+                    alternate = alternateOtherwise[rule];
+                }
             }
+
+            branches.append(sound, alternate);
         }
 
-        return result.toString();
+        branches.collect(out);
+
+        return out.size();
     }
 
     @Override
     public String getEngineId() {
         return DaitchMokotoff.class.getName();
     }
+
+    /**
+     * Per-thread state of the branches of codeAll(). Every branch is a partial
+     * code (as int), its number of digits and its last sound.
+     */
+    private static final class Branches {
+        private static final int[] POWER_OF_TEN = { 1, 10, 100, 1000, 10000, 100000, 1000000 };
+
+        private int[] value = new int[DEFAULT_MAX_BRANCHES];
+        private int[] length = new int[DEFAULT_MAX_BRANCHES];
+        private int[] lastSound = new int[DEFAULT_MAX_BRANCHES];
+        private int count;
+        private int limit;
+
+        void reset(final int maxBranches) {
+            if (value.length < maxBranches) {
+                value = new int[maxBranches];
+                length = new int[maxBranches];
+                lastSound = new int[maxBranches];
+            }
+
+            limit = maxBranches;
+            count = 1;
+            value[0] = 0;
+            length[0] = 0;
+            lastSound[0] = -1;
+        }
+
+        boolean isComplete() {
+            for (int b = 0; b < count; b++) {
+                if (length[b] < CODE_LENGTH) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        void append(final int sound, final int alternate) {
+            int branchCount = count;
+
+            for (int b = 0; b < branchCount; b++) {
+                if ((alternate >= 0) && (count < limit)) {
+                    value[count] = value[b];
+                    length[count] = length[b];
+                    lastSound[count] = lastSound[b];
+                    appendSound(count, alternate);
+                    count++;
+                }
+
+                appendSound(b, sound);
+            }
+
+            if (count > branchCount) {
+                removeDuplicates();
+            }
+        }
+
+        private void appendSound(final int b, final int sound) {
+            if (sound != lastSound[b]) {
+                char[] digits = sounds[sound];
+
+                for (int i = 0; (i < digits.length) && (length[b] < CODE_LENGTH); i++) {
+                    value[b] = (value[b] * 10) + (digits[i] - '0');
+                    length[b]++;
+                }
+
+                lastSound[b] = sound;
+            }
+        }
+
+        private void removeDuplicates() {
+            int kept = 1;
+
+            for (int b = 1; b < count; b++) {
+                boolean duplicate = false;
+
+                for (int o = 0; (o < kept) && !duplicate; o++) {
+                    duplicate = (value[o] == value[b]) && (length[o] == length[b]) &&
+                            (lastSound[o] == lastSound[b]);
+                }
+
+                if (!duplicate) {
+                    value[kept] = value[b];
+                    length[kept] = length[b];
+                    lastSound[kept] = lastSound[b];
+                    kept++;
+                }
+            }
+
+            count = kept;
+        }
+
+        void collect(final DaitchMokotoffCodes out) {
+            for (int b = 0; b < count; b++) {
+                out.add(value[b] * POWER_OF_TEN[CODE_LENGTH - length[b]]);
+            }
+        }
+    }
 }
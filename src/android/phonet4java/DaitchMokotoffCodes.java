@@ -0,0 +1,136 @@
+/*
+ * DaitchMokotoffCodes.java
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package de.zedlitz.phonet4java;
+
+/**
+ * A small sorted set of 6-digit Daitch-Mokotoff codes, each stored as the
+ * int value of its digits (e.g. "054800" is 54800).
+ *
+ * A set is meant to be reused: {@link DaitchMokotoff#codeAll(String, DaitchMokotoffCodes)}
+ * clears and refills it without allocating once its capacity is large enough.
+ */
+public final class DaitchMokotoffCodes {
+    private int[] codes;
+    private int size;
+
+    public DaitchMokotoffCodes() {
+        this(DaitchMokotoff.DEFAULT_MAX_BRANCHES);
+    }
+
+    public DaitchMokotoffCodes(final int capacity) {
+        codes = new int[Math.max(1, capacity)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int get(final int index) {
+        return codes[index];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Add a code, keeping the set sorted and free of duplicates.
+     */
+    public void add(final int code) {
+        int pos = 0;
+
+        while ((pos < size) && (codes[pos] < code)) {
+            pos++;
+        }
+
+        if ((pos < size) && (codes[pos] == code)) {
+            return;
+        }
+
+        if (size == codes.length) {
+            int[] grown = new int[codes.length * 2];
+            System.arraycopy(codes, 0, grown, 0, size);
+            codes = grown;
+        }
+
+        System.arraycopy(codes, pos, codes, pos + 1, size - pos);
+        codes[pos] = code;
+        size++;
+    }
+
+    public boolean contains(final int code) {
+        for (int i = 0; (i < size) && (codes[i] <= code); i++) {
+            if (codes[i] == code) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Check if both sets have at least one code in common.
+     */
+    public boolean intersects(final DaitchMokotoffCodes other) {
+        int i = 0;
+        int j = 0;
+
+        while ((i < size) && (j < other.size)) {
+            if (codes[i] == other.codes[j]) {
+                return true;
+            } else if (codes[i] < other.codes[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Format a code as the usual 6 digit string.
+     */
+    public static String format(final int code) {
+        char[] digits = new char[6];
+        int value = code;
+
+        for (int i = 5; i >= 0; i--) {
+            digits[i] = (char) ('0' + (value % 10));
+            value /= 10;
+        }
+
+        return new String(digits);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                result.append('|');
+            }
+
+            result.append(format(codes[i]));
+        }
+
+        return result.toString();
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * KeyCoder.java
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package de.zedlitz.phonet4java;
+
+/**
+ * A {@link Coder} that also returns its code as a primitive key, so codes can
+ * be compared and stored without building Strings.
+ *
+ * Two inputs get the same key if their codes are equal ignoring case. Codes
+ * that fit into a long are packed exactly, longer ones are hashed (see
+ * {@link PhoneticKeys}), so different long codes collide with a very small
+ * probability.
+ */
+public interface KeyCoder extends Coder {
+    long key(final String input);
+
+    /**
+     * The key of input[start, end), same as key(input.subSequence(start, end).toString()).
+     */
+    long key(final CharSequence input, final int start, final int end);
+}
@@ -32,7 +32,94 @@ package de.zedlitz.phonet4java;
  * @author Jesper Zedlitz &lt;jze@informatik.uni-kiel.de&gt;
  *
  */
-public class KoelnerPhonetik implements Coder {
+public class KoelnerPhonetik implements KeyCoder {
+    /* character classes */
+    private static final byte NONE = 0;
+    private static final byte VOWEL = 1;
+    private static final byte B = 2;
+    private static final byte FVW = 3;
+    private static final byte GKQ = 4;
+    private static final byte L = 5;
+    private static final byte MN = 6;
+    private static final byte R = 7;
+    private static final byte SZ = 8;
+    private static final byte DT = 9;
+    private static final byte P = 10;
+    private static final byte X = 11;
+    private static final byte C = 12;
+
+    /* context flags of a neighbour letter */
+    private static final byte C_HARD_BEFORE = 1;   // c followed by a,h,k,l,o,q,r,u,x is 4
+    private static final byte DT_SOFT_BEFORE = 2;  // d/t followed by c,s,z,ß is 8
+    private static final byte X_SOFT_AFTER = 4;    // x after c,k,q is 8
+    private static final byte C_SOFT_AFTER = 8;    // c after s,z,ß is 8
+    private static final byte H = 16;              // ph is 3
+
+    private static final int TABLE_SIZE = 256;
+    private static final byte[] charClass = new byte[TABLE_SIZE];
+    private static final byte[] context = new byte[TABLE_SIZE];
+
+    private static final ThreadLocal<char[][]> BUFFER = new ThreadLocal<char[][]>() {
+        @Override
+        protected char[][] initialValue() {
+            return new char[][] { new char[64] };
+        }
+    };
+
+    static {
+        classify("aeijouyäöü", VOWEL);
+        classify("b", B);
+        classify("fvw", FVW);
+        classify("gkq", GKQ);
+        classify("l", L);
+        classify("mn", MN);
+        classify("r", R);
+        classify("szß", SZ);
+        classify("dt", DT);
+        classify("p", P);
+        classify("x", X);
+        classify("c", C);
+
+        flag("ahkloqrux", C_HARD_BEFORE);
+        flag("csßz", DT_SOFT_BEFORE);
+        flag("ckq", X_SOFT_AFTER);
+        flag("szß", C_SOFT_AFTER);
+        flag("h", H);
+    }
+
+    private static void classify(final String letters, final byte c) {
+        for (int i = 0; i < letters.length(); i++) {
+            charClass[letters.charAt(i)] = c;
+        }
+    }
+
+    private static void flag(final String letters, final byte f) {
+        for (int i = 0; i < letters.length(); i++) {
+            context[letters.charAt(i)] |= f;
+        }
+    }
+
+    private static char lowerCase(final char c) {
+        return Character.toLowerCase(c);
+    }
+
+    private static byte classOf(final char c) {
+        return (c < TABLE_SIZE) ? charClass[c] : NONE;
+    }
+
+    /**
+     * Context flags of the letter at position i, 0 outside of the word.
+     */
+    private static byte contextAt(final CharSequence word, final int start, final int end, final int i) {
+        if ((i < start) || (i >= end)) {
+            return 0;
+        }
+
+        char c = lowerCase(word.charAt(i));
+
+        return (c < TABLE_SIZE) ? context[c] : 0;
+    }
+
     /**
       * @see Coder#code(java.lang.String)
       */
@@ -41,144 +128,157 @@ public class KoelnerPhonetik implements Coder {
             return "";
         }
 
-        String word = input.toLowerCase();
-
-        StringBuilder code = new StringBuilder();
-        boolean beginningOfWord = true;
-
-        for (int i = 0; i < word.length(); i++) {
-            char c = word.charAt(i);
-
-            if ((c == 'a') || (c == 'e') || (c == 'i') || (c == 'j') ||
-                    (c == 'o') || (c == 'u') || (c == 'y') || (c == 'ä') ||
-                    (c == 'ö') || (c == 'ü')) {
-                code.append(0);
-            } else if (c == 'b') {
-                code.append(1);
-            } else if ((c == 'f') || (c == 'v') || (c == 'w')) {
-                code.append(3);
-            } else if ((c == 'g') || (c == 'k') || (c == 'q')) {
-                code.append(4);
-            } else if (c == 'l') {
-                code.append(5);
-            } else if ((c == 'm') || (c == 'n')) {
-                code.append(6);
-            } else if (c == 'r') {
-                code.append(7);
-            } else if ((c == 's') || (c == 'z') || (c == 'ß')) {
-                code.append(8);
-            } else if ((c == 'd') || (c == 't')) {
-                if (isNextLetter(word, i, 'c') || isNextLetter(word, i, 'ß') ||
-                        isNextLetter(word, i, 'z') ||
-                        isNextLetter(word, i, 's')) {
-                    code.append(8);
-                } else {
-                    code.append(2);
-                }
-            } else if (c == 'p') {
-                if (isNextLetter(word, i, 'h')) {
-                    code.append(3);
-                } else {
-                    code.append(1);
-                }
-            } else if (c == 'x') {
-                if (isPreviousLetter(word, i, 'c') ||
-                        isPreviousLetter(word, i, 'k') ||
-                        isPreviousLetter(word, i, 'q')) {
-                    code.append(8);
+        char[] buffer = buffer(input.length());
+        int length = encode(input, 0, input.length(), buffer);
+
+        return new String(buffer, 0, length);
+    }
+
+    /**
+      * @see KeyCoder#key(java.lang.String)
+      */
+    public long key(final String input) {
+        if ((input == null) || (input.length() == 0)) {
+            return PhoneticKeys.of("");
+        }
+
+        return key(input, 0, input.length());
+    }
+
+    /**
+      * @see Coder#code(java.lang.CharSequence, int, int, java.lang.StringBuilder)
+      */
+    public void code(final CharSequence input, final int start, final int end,
+        final StringBuilder out) {
+        char[] buffer = buffer(end - start);
+        int length = encode(input, start, end, buffer);
+
+        out.append(buffer, 0, length);
+    }
+
+    /**
+      * @see KeyCoder#key(java.lang.CharSequence, int, int)
+      */
+    public long key(final CharSequence input, final int start, final int end) {
+        char[] buffer = buffer(end - start);
+        int length = encode(input, start, end, buffer);
+
+        return PhoneticKeys.of(buffer, 0, length);
+    }
+
+    /**
+     * The per-thread output buffer, large enough for an input of the given length.
+     */
+    private static char[] buffer(final int inputLength) {
+        char[][] buffer = BUFFER.get();
+
+        if (buffer[0].length < (inputLength * 2)) {
+            buffer[0] = new char[inputLength * 2];
+        }
+
+        return buffer[0];
+    }
+
+    /**
+     * Encode word[start, end) into out in a single pass: every letter is
+     * looked up in the class table, consecutive equal digits are dropped and
+     * zeros are only kept at the beginning of the code.
+     *
+     * @param out receives the code, must hold at least 2 * (end - start) chars
+     * @return the length of the code
+     */
+    private static int encode(final CharSequence word, final int start, final int end, final char[] out) {
+        int length = 0;
+        char last = ' ';
+
+        for (int i = start; i < end; i++) {
+            char digit;
+            char second = 0;
+
+            switch (classOf(lowerCase(word.charAt(i)))) {
+            case VOWEL:
+                digit = '0';
+                break;
+
+            case B:
+                digit = '1';
+                break;
+
+            case FVW:
+                digit = '3';
+                break;
+
+            case GKQ:
+                digit = '4';
+                break;
+
+            case L:
+                digit = '5';
+                break;
+
+            case MN:
+                digit = '6';
+                break;
+
+            case R:
+                digit = '7';
+                break;
+
+            case SZ:
+                digit = '8';
+                break;
+
+            case DT:
+                digit = ((contextAt(word, start, end, i + 1) & DT_SOFT_BEFORE) != 0) ? '8' : '2';
+                break;
+
+            case P:
+                digit = ((contextAt(word, start, end, i + 1) & H) != 0) ? '3' : '1';
+                break;
+
+            case X:
+                if ((contextAt(word, start, end, i - 1) & X_SOFT_AFTER) != 0) {
+                    digit = '8';
                 } else {
-                    code.append(4);
-                    code.append(8);
+                    digit = '4';
+                    second = '8';
                 }
-            } else if (c == 'c') {
-                if (beginningOfWord) {
-                    if (isNextLetter(word, i, 'a') ||
-                            isNextLetter(word, i, 'h') ||
-                            isNextLetter(word, i, 'k') ||
-                            isNextLetter(word, i, 'l') ||
-                            isNextLetter(word, i, 'o') ||
-                            isNextLetter(word, i, 'q') ||
-                            isNextLetter(word, i, 'r') ||
-                            isNextLetter(word, i, 'u') ||
-                            isNextLetter(word, i, 'x')) {
-                        code.append(4);
-                    } else {
-                        code.append(8);
-                    }
+                break;
+
+            case C:
+                if ((i > start) && ((contextAt(word, start, end, i - 1) & C_SOFT_AFTER) != 0)) {
+                    digit = '8';
+                } else if ((contextAt(word, start, end, i + 1) & C_HARD_BEFORE) != 0) {
+                    digit = '4';
                 } else {
-                    if (isPreviousLetter(word, i, 's') ||
-                            isPreviousLetter(word, i, 'z') ||
-                            isPreviousLetter(word, i, 'ß')) {
-                        code.append(8);
-                    } else if (isNextLetter(word, i, 'a') ||
-                            isNextLetter(word, i, 'h') ||
-                            isNextLetter(word, i, 'k') ||
-                            isNextLetter(word, i, 'l') ||
-                            isNextLetter(word, i, 'o') ||
-                            isNextLetter(word, i, 'q') ||
-                            isNextLetter(word, i, 'r') ||
-                            isNextLetter(word, i, 'u') ||
-                            isNextLetter(word, i, 'x')) {
-                        code.append(4);
-                    } else {
-                        code.append(8);
-                    }
+                    digit = '8';
                 }
-            } /*else if ((c == ' ') || (c == '-') || (c == '/') || (c == ',')) {
-                beginningOfWord = true;
-            }   */
+                break;
 
-            beginningOfWord = false;
-        }
-
-        // remove duplicates
-        int i = 0;
-        char lastChar = ' ';
+            default:
+                continue;
+            }
 
-        while (i < code.length()) {
-            char c = code.charAt(i);
+            /* remove duplicates, then zeros after the first digit */
+            if (digit != last) {
+                last = digit;
 
-            if (c == lastChar) {
-                code.deleteCharAt(i);
-            } else {
-                lastChar = c;
-                i++;
+                if ((digit != '0') || (length == 0)) {
+                    out[length++] = digit;
+                }
             }
-        }
 
-        // remove zeros
-        i = 1;
-
-        while (i < code.length()) {
-            if (code.charAt(i) == '0') {
-                code.deleteCharAt(i);
-            } else {
-                i++;
+            if ((second != 0) && (second != last)) {
+                last = second;
+                out[length++] = second;
             }
         }
 
-        return code.toString();
+        return length;
     }
 
     @Override
     public String getEngineId() {
         return KoelnerPhonetik.class.getName();
     }
-
-    /**
-     * Check if the letter at positoin (i+1) == letter.
-        */
-    private boolean isNextLetter(final String s, final int i, final char letter) {
-        return s.length() > (i + 1) && s.charAt(i + 1) == letter;
-
-    }
-
-    /**
-     * Check if the letter at positoin (i-1) == letter.
-      */
-    private boolean isPreviousLetter(final String s, final int i,
-        final char letter) {
-        return i >= 1 && s.charAt(i - 1) == letter;
-
-    }
 }
@@ -27,25 +27,26 @@ package de.zedlitz.phonet4java;
  * @author Jesper Zedlitz &lt;jze@informatik.uni-kiel.de&gt;
  */
 public abstract class Phonet {
-    private static final String[] phonet_rules = PhoneticRules.phonet_rules_german;
-    private static final int HASH_COUNT = 512;
-    private static final String umlaut_upper = "ÀÁÂÃÅÄÆÇÐÈÉÊËÌÍÎÏÑÒÓÔÕÖØßÞÙÚÛÜÝŸ";
-    private static final String umlaut_lower = "àáâãåäæçðèéêëìíîïñòóôõöøßþùúûüýÿ";
-    private static final String letters_a_to_z = "abcdefghijklmnopqrstuvwxyz";
-    private static final String letters_A_to_Z = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final PhonetRuleTable table = PhonetRuleTable.GERMAN;
+    private static final String[] phonet_rules = table.rules;
+    private static final int HASH_COUNT = PhonetRuleTable.HASH_COUNT;
     private static final char INVALID_CHARACTER = '_';
-    private final int[] phonet_hash = new int[HASH_COUNT];
-    private final int[] alpha_pos = new int[HASH_COUNT];
+    private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    private static final int[] phonet_hash = table.phonet_hash;
+    private static final int[] alpha_pos = table.alpha_pos;
+    private static final int[][] phonet_hash_1 = table.phonet_hash_1;
+    private static final int[][] phonet_hash_2 = table.phonet_hash_2;
+
     /**
      * Output debug information if set <code>true</code>.
      */
     boolean trace = false;
-    private int[][] phonet_hash_1 = new int[26][28];
-    private int[][] phonet_hash_2 = new int[26][28];
-
-    public Phonet() {
-        this.initialize_phonet();
-    }
 
     private void trace_info(final String text, final int n, final String errText) {
         String s = (phonet_rules[n] == null) ? "(NULL)" : phonet_rules[n];
@@ -55,38 +56,6 @@ public abstract class Phonet {
         System.out.printf("%s %d:  \"%s\"%s\"%s\" %s\n", text, ((n / 3) + 1), s, s2, s3, errText);
     }
 
-    /**
-     * Remove the first character of a String.
-     */
-    private String removeFirst(final String s) {
-        String result;
-
-        if ((s == null) || (s.length() == 0)) {
-            result = null;
-        } else {
-            result = s.substring(1);
-
-            if (result.length() == 0) {
-                result = null;
-            }
-        }
-
-        return result;
-    }
-
-    /**
-     * Return the pos's character, 0 is the String is to short or null
-     */
-    private char charAt(final String s, final int pos) {
-        char result = 0;
-
-        if ((s != null) && (s.length() > pos)) {
-            result = s.charAt(pos);
-        }
-
-        return result;
-    }
-
     private int alphaPos(char i) {
         if (i >= HASH_COUNT) {
             return alpha_pos[INVALID_CHARACTER];
@@ -101,166 +70,116 @@ public abstract class Phonet {
         return phonet_hash[i];
     }
 
+    /**
+     * Upper-case a single character the way the rules expect it: only 'a'-'z'
+     * and the umlauts are mapped, everything else is kept.
+     */
+    private static char toUpperCase(final char c) {
+        return (c < HASH_COUNT) ? table.upperCase[c] : c;
+    }
 
-    private void initialize_phonet() {
-        /*  generate arrays "alpha_pos", "upperchar" and "isletter"  */
-        for (int i = 0; i < HASH_COUNT; i++) {
-            alpha_pos[i] = 0;
-        }
-
-        /* German and international umlauts  */
-        for (int i = 0; i < umlaut_lower.length(); i++) {
-            char n = umlaut_upper.charAt(i);
-            alpha_pos[n] = -1 + 2;
+    /**
+     * Return the pos's character of a replacement, 0 if it is to short.
+     */
+    private static char ruleCharAt(final String rule, final int pos) {
+        char result = 0;
 
-            n = umlaut_lower.charAt(i);
-            alpha_pos[n] = -1 + 2;
+        if ((rule != null) && (rule.length() > pos)) {
+            result = rule.charAt(pos);
         }
 
-        /*  "normal" letters ('a'-'z' and 'A'-'Z')  */
-        for (int i = 0; i < letters_a_to_z.length(); i++) {
-            char n = letters_A_to_Z.charAt(i);
-            alpha_pos[n] = i + 2;
+        return result;
+    }
 
-            n = letters_a_to_z.charAt(i);
-            alpha_pos[n] = i + 2;
-        }
+    /**
+     * Return the pos's character of a buffer, 0 if the buffer is to short.
+     */
+    private static char charAt(final char[] buffer, final int length, final int pos) {
+        char result = 0;
 
-        for (int i = 0; i < HASH_COUNT; i++) {
-            phonet_hash[i] = -1;
+        if (length > pos) {
+            result = buffer[pos];
         }
 
-        for (int i = 0; i < 26; i++) {
-            int[] p_hash1 = phonet_hash_1[i];
-            int[] p_hash2 = phonet_hash_2[i];
-
-            for (int k = 0; k < 28; k++) {
-                p_hash1[k] = -1;
-                p_hash2[k] = -1;
-            }
-        }
-        initializePhoneticRules();
+        return result;
     }
 
-    private void initializePhoneticRules() {
-        /* for each phonetc rule */
-        for (int i = 0;
-             (phonet_rules[i] == null) ||
-                     !phonet_rules[i].equals(PhoneticRules.PHONET_END); i++) {
-            String s = phonet_rules[i];
-
-            if ((s != null) && ((i % 3) == 0)) {
-                /* calculate first hash value */
-                int k = phonet_rules[i].charAt(0);
-
-                if ((phonet_hash[k] < 0) &&
-                        ((phonet_rules[i + 1] != null) ||
-                                (phonet_rules[i + 2] != null))) {
-                    phonet_hash[k] = i;
-                }
-
-                /* calculate second hash values  */
-                if ((k != 0) && (alpha_pos[k] >= 2)) {
-                    k = alpha_pos[k];
-
-                    int[] p_hash1 = phonet_hash_1[k - 2];
-                    int[] p_hash2 = phonet_hash_2[k - 2];
-                    s = s.substring(1);
-
-                    if (s.length() == 0) {
-                        s = " ";
-                    } else if (s.charAt(0) == '(') {
-                        s = s.substring(1);
-                    } else {
-                        s = "" + s.charAt(0);
-                    }
-
-                    while ((s.length() > 0) && (s.charAt(0) != ')')) {
-                        k = alpha_pos[s.charAt(0)];
-
-                        if (k > 0) {
-                            /*  add hash value for this letter  */
-                            if (p_hash1[k] < 0) {
-                                p_hash1[k] = i;
-                                p_hash2[k] = i;
-                            }
-
-                            if (p_hash2[k] >= (i - 30)) {
-                                p_hash2[k] = i;
-                            } else {
-                                k = -1;
-                            }
-                        }
-
-                        if (k <= 0) {
-                            /*  add hash value for all letters  */
-                            if (p_hash1[0] < 0) {
-                                p_hash1[0] = i;
-                            }
+    String phonet(final String input, final int ml) {
+        if ((input == null) || (input.length() == 0)) {
+            return "";
+        }
 
-                            p_hash2[0] = i;
-                        }
+        Scratch scratch = SCRATCH.get();
+        int length = phonet(input, 0, input.length(), ml, scratch);
 
-                        s = s.substring(1);
-                    }
-                }
-            }
-        }
+        return new String(scratch.dest, 0, length);
     }
 
-    private String toUpperCase(final String s) {
-        StringBuilder result = new StringBuilder();
-
-        for (int i = 0; i < s.length(); i++) {
-            char c = s.charAt(i);
+    /**
+     * Append the code of input[start, end) to out.
+     */
+    void phonet(final CharSequence input, final int start, final int end, final int ml,
+        final StringBuilder out) {
+        Scratch scratch = SCRATCH.get();
+        int length = phonet(input, start, end, ml, scratch);
 
-            int pos;
+        out.append(scratch.dest, 0, length);
+    }
 
-            if ((pos = letters_a_to_z.indexOf(c)) > -1) {
-                // a normal letter
-                result.append(letters_A_to_Z.charAt(pos));
-            } else if ((pos = umlaut_lower.indexOf(c)) > -1) {
-                // an umlaut
-                result.append(umlaut_upper.charAt(pos));
-            } else {
-                // another character
-                result.append(c);
-            }
-        }
+    /**
+     * The {@link PhoneticKeys} key of the code of input[start, end).
+     */
+    long phonetKey(final CharSequence input, final int start, final int end, final int ml) {
+        Scratch scratch = SCRATCH.get();
+        int length = phonet(input, start, end, ml, scratch);
 
-        return result.toString();
+        return PhoneticKeys.of(scratch.dest, 0, length);
     }
 
-    String phonet(final String input, final int ml) {
+    /**
+     * Encode input[start, end) into scratch.dest.
+     *
+     * @return the length of the code
+     */
+    private int phonet(final CharSequence input, final int start, final int end, final int ml,
+        final Scratch scratch) {
         int k0;
         int n0;
         int p0;
         int z0;
         char c0 = 0;
-        String s;
-        String dest = input;
+        char[] s;
+        int sp;
 
-        if ((input == null) || (input.length() == 0)) {
-            return "";
+        if (start >= end) {
+            return 0;
         }
 
-        int inputLength = input.length();
+        final char[][] search = table.search;
+        int inputLength = end - start;
 
         /* convert input string to upper-case */
-        String src = toUpperCase(input);
+        char[] src = scratch.source(inputLength);
+        int srcLength = inputLength;
+
+        for (int pos = 0; pos < inputLength; pos++) {
+            src[pos] = toUpperCase(input.charAt(start + pos));
+        }
+
+        char[] dest = scratch.dest(inputLength);
 
         /*  check "src"  */
         int i = 0;
         int j = 0;
         int z = 0;
 
-        while (i < src.length()) {
-            char c = src.charAt(i);
+        while (i < srcLength) {
+            char c = src[i];
 
             if (trace) {
                 System.out.printf("\ncheck position %d:  src = \"%s\",", j,
-                        src.substring(i));
-                System.out.printf("  dest = \"%s\"\n", dest.substring(0, j));
+                        new String(src, i, srcLength - i));
+                System.out.printf("  dest = \"%s\"\n", new String(dest, 0, j));
             }
 
             int start1;
@@ -273,10 +192,10 @@ public abstract class Phonet {
                 int[] p_hash1 = phonet_hash_1[n - 2];
                 int[] p_hash2 = phonet_hash_2[n - 2];
 
-                if ((i + 1) == src.length()) {
+                if ((i + 1) == srcLength) {
                     n = alpha_pos[0];
                 } else {
-                    n = alphaPos(src.charAt(i + 1));
+                    n = alphaPos(src[i + 1]);
                 }
 
                 start1 = p_hash1[n];
@@ -315,8 +234,8 @@ public abstract class Phonet {
 
             if (n >= 0) {
                 /* check rules for this char */
-                while ((phonet_rules[n] == null) ||
-                        (phonet_rules[n].charAt(0) == c)) {
+                while ((search[n / 3] == null) ||
+                        (search[n / 3][0] == c)) {
                     if (n > end1) {
                         if (start2 > 0) {
                             n = start2;
@@ -330,7 +249,7 @@ public abstract class Phonet {
                         break;
                     }
 
-                    if ((phonet_rules[n] == null) ||
+                    if ((search[n / 3] == null) ||
                             (phonet_rules[n + ml] == null)) {
                         /* no conversion rule available */
                         n += 3;
@@ -343,79 +262,86 @@ public abstract class Phonet {
                     }
 
                     /* check whole string */
+                    int r = n / 3;
                     int k = 1; // number of matching letters
                     int p = 5; // default priority
-                    s = phonet_rules[n];
-                    s = removeFirst(s);
-
-                    while ((s != null) && (s.length() > 0) &&
-                            (src.length() > (i + k)) &&
-                            (src.charAt(i + k) == s.charAt(0)) &&
-                            !Character.isDigit(s.charAt(0)) &&
-                            (!"(-<^$".contains(s))) {
+                    s = search[r];
+                    sp = 1;
+
+                    while ((s.length > sp) &&
+                            (srcLength > (i + k)) &&
+                            (src[i + k] == s[sp]) &&
+                            !Character.isDigit(s[sp]) &&
+                            (sp < table.flagTail[r])) {
                         k++;
-                        s = removeFirst(s);
+                        sp++;
                     }
 
-                    if ((s != null) && (s.charAt(0) == '(')) {
-                        /* check an array of letters  */
-                        if ((src.length() > (i + k)) &&
-                                Character.isLetter(src.charAt(i + k)) &&
-                                (s.substring(1).indexOf(src.charAt(i + k)) > -1)) {
-                            k++;
-
-                            while ((s != null) && (s.charAt(0) != ')')) {
-                                s = removeFirst(s);
-                            }
+                    if ((sp == table.literalEnd[r]) &&
+                            ((table.letterArray[r] == null) ||
+                                    ((srcLength > (i + k)) &&
+                                            Character.isLetter(src[i + k]) &&
+                                            table.isInLetterArray(r, src[i + k])))) {
+                        /* all letters matched: use the precompiled flags */
+                        k0 = table.matchLength[r];
+                        k = table.replaceLength[r];
+                        p0 = table.flagChar[r];
+                        p = table.priority[r];
+                        sp = table.conditionPos[r];
+                    } else {
+                        /* the input contains flag characters, parse the rest of the rule */
+                        if (PhonetRuleTable.charAt(s, sp) == '(') {
+                            /* check an array of letters  */
+                            if ((srcLength > (i + k)) &&
+                                    Character.isLetter(src[i + k]) &&
+                                    table.isInLetterArray(r, sp, src[i + k])) {
+                                k++;
+
+                                while ((s.length > sp) && (s[sp] != ')')) {
+                                    sp++;
+                                }
 
-                            if (s.charAt(0) == ')') {
-                                s = removeFirst(s);
+                                if (s.length > sp) {
+                                    sp++;
+                                }
                             }
                         }
-                    }
-
-                    if (s != null) {
-                        p0 = s.charAt(0);
-                    } else {
-                        p0 = 0;
-                    }
-
-                    k0 = k;
 
-                    while ((charAt(s, 0) == '-') && (k > 1)) {
-                        k--;
-                        s = removeFirst(s);
-                    }
+                        p0 = PhonetRuleTable.charAt(s, sp);
+                        k0 = k;
 
-                    if (charAt(s, 0) == '<') {
-                        s = s.substring(1);
+                        while ((PhonetRuleTable.charAt(s, sp) == '-') && (k > 1)) {
+                            k--;
+                            sp++;
+                        }
 
-                        if (s.length() == 0) {
-                            s = null;
+                        if (PhonetRuleTable.charAt(s, sp) == '<') {
+                            sp++;
                         }
-                    }
 
-                    if ((charAt(s, 0) != 0) && Character.isDigit(s.charAt(0))) {
-                        /*  read priority  */
-                        p = s.charAt(0) - '0';
-                        s = removeFirst(s);
-                    }
+                        if (Character.isDigit(PhonetRuleTable.charAt(s, sp))) {
+                            /*  read priority  */
+                            p = s[sp] - '0';
+                            sp++;
+                        }
 
-                    if ((charAt(s, 0) == '^') && (charAt(s, 1) == '^')) {
-                        s = removeFirst(s);
+                        if ((PhonetRuleTable.charAt(s, sp) == '^') &&
+                                (PhonetRuleTable.charAt(s, sp + 1) == '^')) {
+                            sp++;
+                        }
                     }
 
-                    if ((charAt(s, 0) == 0) ||
-                            ((charAt(s, 0) == '^') &&
+                    if ((PhonetRuleTable.charAt(s, sp) == 0) ||
+                            ((PhonetRuleTable.charAt(s, sp) == '^') &&
                                     ((i == 0) ||
-                                            !Character.isLetter(charAt(src, i - 1))) &&
-                                    ((charAt(s, 1) != '$') ||
-                                            (!Character.isLetter(charAt(src, i + k0)) &&
-                                                    (charAt(src, i + k0) != '.')))) ||
-                            ((charAt(s, 0) == '$') && (i > 0) &&
-                                    Character.isLetter(charAt(src, i - 1)) &&
-                                    (!Character.isLetter(charAt(src, i + k0)) &&
-                                            (charAt(src, i + k0) != '.')))) {
+                                            !Character.isLetter(charAt(src, srcLength, i - 1))) &&
+                                    ((PhonetRuleTable.charAt(s, sp + 1) != '$') ||
+                                            (!Character.isLetter(charAt(src, srcLength, i + k0)) &&
+                                                    (charAt(src, srcLength, i + k0) != '.')))) ||
+                            ((PhonetRuleTable.charAt(s, sp) == '$') && (i > 0) &&
+                                    Character.isLetter(charAt(src, srcLength, i - 1)) &&
+                                    (!Character.isLetter(charAt(src, srcLength, i + k0)) &&
+                                            (charAt(src, srcLength, i + k0) != '.')))) {
                         /* look for continuation, if:
                               k > 1 und NO '-' in first string */
                         n0 = -1;
@@ -425,15 +351,15 @@ public abstract class Phonet {
                         int end3 = 0;
                         int end4 = 0;
 
-                        if ((k > 1) && (charAt(src, i + k) != 0) &&
+                        if ((k > 1) && (charAt(src, srcLength, i + k) != 0) &&
                                 (p0 != '-')) {
-                            c0 = charAt(src, (i + k) - 1);
+                            c0 = charAt(src, srcLength, (i + k) - 1);
                             n0 = alphaPos(c0);
 
-                            if ((n0 >= 2) && (charAt(src, i + k) != 0)) {
+                            if ((n0 >= 2) && (charAt(src, srcLength, i + k) != 0)) {
                                 int[] p_hash1 = phonet_hash_1[n0 - 2];
                                 int[] p_hash2 = phonet_hash_2[n0 - 2];
-                                n0 = alphaPos(charAt(src, i + k));
+                                n0 = alphaPos(charAt(src, srcLength, i + k));
                                 start3 = p_hash1[n0];
                                 start4 = p_hash1[0];
                                 end3 = p_hash2[n0];
@@ -471,8 +397,8 @@ public abstract class Phonet {
 
                         if (n0 >= 0) { /* check continuation rules for "src[i+k] */
 
-                            while ((phonet_rules[n0] == null) ||
-                                    (phonet_rules[n0].charAt(0) == c0)) {
+                            while ((search[n0 / 3] == null) ||
+                                    (search[n0 / 3][0] == c0)) {
                                 if (n0 > end3) {
                                     if (start4 > 0) {
                                         n0 = start4;
@@ -489,7 +415,7 @@ public abstract class Phonet {
                                     break;
                                 }
 
-                                if ((phonet_rules[n0] == null) ||
+                                if ((search[n0 / 3] == null) ||
                                         (phonet_rules[n0 + ml] == null)) {
                                     /* no conversion rule available  */
                                     n0 += 3;
@@ -503,57 +429,70 @@ public abstract class Phonet {
                                 }
 
                                 /*  check whole string  */
+                                int r0 = n0 / 3;
                                 k0 = k;
                                 p0 = 5;
-                                s = phonet_rules[n0];
-                                s = removeFirst(s);
+                                s = search[r0];
+                                sp = 1;
 
-                                while ((s != null) && s.length() > 0 &&
-                                        (charAt(src, i + k0) == charAt(s, 0)) &&
-                                        (!Character.isDigit(charAt(s, 0)) ||
-                                                (!"(-<^$".contains(s)))) {
+                                while ((s.length > sp) &&
+                                        (charAt(src, srcLength, i + k0) == s[sp]) &&
+                                        (!Character.isDigit(s[sp]) ||
+                                                (sp < table.flagTail[r0]))) {
                                     k0++;
-                                    s = removeFirst(s);
+                                    sp++;
                                 }
 
-                                if (charAt(s, 0) == '(') {
-                                    /* check an array of letters  */
-                                    if (Character.isLetter(charAt(src, i + k0)) &&
-                                            (s.substring(1)
-                                                    .indexOf(charAt(src, i + k0)) > -1)) {
+                                if ((sp == table.literalEnd[r0]) &&
+                                        ((table.letterArray[r0] == null) ||
+                                                (Character.isLetter(charAt(src, srcLength, i + k0)) &&
+                                                        table.isInLetterArray(r0, charAt(src, srcLength, i + k0))))) {
+                                    /* all letters matched: use the precompiled flags */
+                                    if (table.letterArray[r0] != null) {
                                         k0++;
+                                    }
 
-                                        while ((s != null) &&
-                                                (s.charAt(0) != ')')) {
-                                            s = removeFirst(s);
-                                        }
-
-                                        if (s.charAt(0) == ')') {
-                                            s = removeFirst(s);
+                                    p0 = table.continuationPriority[r0];
+                                    sp = table.continuationConditionPos[r0];
+                                } else {
+                                    if (PhonetRuleTable.charAt(s, sp) == '(') {
+                                        /* check an array of letters  */
+                                        if (Character.isLetter(charAt(src, srcLength, i + k0)) &&
+                                                table.isInLetterArray(r0, sp, charAt(src, srcLength, i + k0))) {
+                                            k0++;
+
+                                            while ((s.length > sp) &&
+                                                    (s[sp] != ')')) {
+                                                sp++;
+                                            }
+
+                                            if (s.length > sp) {
+                                                sp++;
+                                            }
                                         }
                                     }
-                                }
 
-                                while (charAt(s, 0) == '-') {
-                                    /*  "k0" is NOT decremented
-                                         because of  "if (k0 == k)"  ****/
-                                    s = removeFirst(s);
-                                }
+                                    while (PhonetRuleTable.charAt(s, sp) == '-') {
+                                        /*  "k0" is NOT decremented
+                                             because of  "if (k0 == k)"  ****/
+                                        sp++;
+                                    }
 
-                                if (charAt(s, 0) == '<') {
-                                    s = removeFirst(s);
-                                }
+                                    if (PhonetRuleTable.charAt(s, sp) == '<') {
+                                        sp++;
+                                    }
 
-                                if (Character.isDigit(charAt(s, 0))) {
-                                    p0 = s.charAt(0) - '0';
-                                    s = removeFirst(s);
+                                    if (Character.isDigit(PhonetRuleTable.charAt(s, sp))) {
+                                        p0 = s[sp] - '0';
+                                        sp++;
+                                    }
                                 }
 
-                                if ((s == null) || s.length() == 0
+                                if ((s.length <= sp)
                                         /*s == '^' is not possible here */ ||
-                                        ((charAt(s, 0) == '$') &&
-                                                !Character.isLetter(charAt(src, i + k0)) &&
-                                                (charAt(src, i + k0) != '.'))) {
+                                        ((s[sp] == '$') &&
+                                                !Character.isLetter(charAt(src, srcLength, i + k0)) &&
+                                                (charAt(src, srcLength, i + k0) != '.'))) {
                                     if (k0 == k) {
                                         /* this is only a partial string */
                                         if (trace) {
@@ -592,8 +531,8 @@ public abstract class Phonet {
 
                             /* end of "while" */
                             if ((p0 >= p) &&
-                                    ((phonet_rules[n0] != null) &&
-                                            (phonet_rules[n0].charAt(0) == c0))) {
+                                    ((search[n0 / 3] != null) &&
+                                            (search[n0 / 3][0] == c0))) {
                                 n += 3;
 
                                 if (trace) {
@@ -611,20 +550,14 @@ public abstract class Phonet {
                             trace_info("Rule no.", n, "is applied");
                         }
 
-                        if ((phonet_rules[n] != null) &&
-                                (phonet_rules[n].substring(1).indexOf('<') > -1)) {
-                            p0 = 1;
-                        } else {
-                            p0 = 0;
-                        }
-
-                        s = phonet_rules[n + ml];
+                        String replacement = phonet_rules[n + ml];
+                        int rp = 0;
 
-                        if ((p0 == 1) && (z == 0)) {
+                        if (table.replaceInput[r] && (z == 0)) {
                             /* rule with '<' is applied */
-                            if ((j > 0) && s != null && s.length() > 0 &&
-                                    ((charAt(dest, j - 1) == c) ||
-                                            (charAt(dest, j - 1) == charAt(s, 0)))) {
+                            if ((j > 0) && (replacement.length() > rp) &&
+                                    ((dest[j - 1] == c) ||
+                                            (dest[j - 1] == replacement.charAt(rp)))) {
                                 j--;
                             }
 
@@ -632,50 +565,45 @@ public abstract class Phonet {
                             z++;
                             k0 = 0;
 
-                            while ((s != null) && (s.length() > 0) && (charAt(src, i + k0) != 0)) {
-                                src = src.substring(0, i + k0) + charAt(s, 0) +
-                                        src.substring(i + k0 + 1);
+                            while ((replacement.length() > rp) && (charAt(src, srcLength, i + k0) != 0)) {
+                                src[i + k0] = replacement.charAt(rp);
                                 k0++;
-                                s = removeFirst(s);
+                                rp++;
                             }
 
                             if (k0 < k) {
-                                src = src.substring(0, i + k0) +
-                                        src.substring(i + k);
+                                System.arraycopy(src, i + k, src, i + k0, srcLength - (i + k));
+                                srcLength -= k - k0;
                             }
 
-                            c = src.charAt(i);
+                            c = charAt(src, srcLength, i);
                         } else {
                             i = (i + k) - 1;
                             z = 0;
 
-                            while ((s != null) && (s.length() > 1)) {
+                            while ((replacement.length() - rp) > 1) {
                                 if ((j == 0) ||
-                                        (dest.charAt(j - 1) != s.charAt(0))) {
-                                    dest = dest.substring(0, j) + s.charAt(0) +
-                                            dest.substring(Math.min(dest.length(), j + 1));
+                                        (dest[j - 1] != replacement.charAt(rp))) {
+                                    dest = scratch.ensureDest(j + 1);
+                                    dest[j] = replacement.charAt(rp);
                                     j++;
                                 }
 
-                                s = removeFirst(s);
+                                rp++;
                             }
 
                             /* new "current char" */
-                            if (s.length() == 0) {
-                                c = 0;
-                            } else {
-                                c = s.charAt(0);
-                            }
+                            c = ruleCharAt(replacement, rp);
 
-                            if ((phonet_rules[n] != null) &&
-                                    (phonet_rules[n].substring(1).contains("^^"))) {
+                            if (table.newWord[r]) {
                                 if (c != 0) {
-                                    dest = dest.substring(0, j) + c +
-                                            dest.substring(Math.min(dest.length(), j + 1));
+                                    dest = scratch.ensureDest(j + 1);
+                                    dest[j] = c;
                                     j++;
                                 }
 
-                                src = src.substring(i + 1);
+                                System.arraycopy(src, i + 1, src, 0, srcLength - (i + 1));
+                                srcLength -= i + 1;
                                 i = 0;
                                 z0 = 1;
                             }
@@ -696,9 +624,10 @@ public abstract class Phonet {
             }
 
             if (z0 == 0) {
-                if ((c != 0) && ((j == 0) || (dest.charAt(j - 1) != c))) {
+                if ((c != 0) && ((j == 0) || (dest[j - 1] != c))) {
                     /* delete multiple letters only */
-                    dest = dest.substring(0, j) + c + dest.substring(Math.min(j + 1, inputLength));
+                    dest = scratch.ensureDest(j + 1);
+                    dest[j] = c;
                     j++;
                 }
 
@@ -707,8 +636,38 @@ public abstract class Phonet {
             }
         }
 
-        dest = dest.substring(0, j);
+        return j;
+    }
+
+    /**
+     * Per-thread working buffers of {@link #phonet(String, int)}. They only
+     * grow, so after a few calls encoding does not allocate anything but the
+     * result.
+     */
+    private static final class Scratch {
+        private char[] source = new char[64];
+        private char[] dest = new char[64];
+
+        char[] source(final int capacity) {
+            if (source.length < capacity) {
+                source = new char[Math.max(capacity, source.length * 2)];
+            }
 
-        return (dest);
+            return source;
+        }
+
+        char[] dest(final int capacity) {
+            return ensureDest(capacity);
+        }
+
+        char[] ensureDest(final int capacity) {
+            if (dest.length < capacity) {
+                char[] grown = new char[Math.max(capacity, dest.length * 2)];
+                System.arraycopy(dest, 0, grown, 0, dest.length);
+                dest = grown;
+            }
+
+            return dest;
+        }
     }
 }
@@ -25,7 +25,7 @@ package de.zedlitz.phonet4java;
  * @author Jesper Zedlitz &lt;jze@informatik.uni-kiel.de&gt;
  *
  */
-public class Phonet2 extends Phonet implements Coder {
+public class Phonet2 extends Phonet implements KeyCoder {
     /**
      * @see Coder#code(java.lang.String)
      */
@@ -33,6 +33,32 @@ public class Phonet2 extends Phonet implements Coder {
         return this.phonet(input, 2);
     }
 
+    /**
+      * @see KeyCoder#key(java.lang.String)
+      */
+    public long key(final String input) {
+        if (input == null) {
+            return PhoneticKeys.of("");
+        }
+
+        return this.phonetKey(input, 0, input.length(), 2);
+    }
+
+    /**
+      * @see Coder#code(java.lang.CharSequence, int, int, java.lang.StringBuilder)
+      */
+    public void code(final CharSequence input, final int start, final int end,
+        final StringBuilder out) {
+        this.phonet(input, start, end, 2, out);
+    }
+
+    /**
+      * @see KeyCoder#key(java.lang.CharSequence, int, int)
+      */
+    public long key(final CharSequence input, final int start, final int end) {
+        return this.phonetKey(input, start, end, 2);
+    }
+
     @Override
     public String getEngineId() {
         return Phonet2.class.getName();
@@ -0,0 +1,357 @@
+/*
+ * PhonetRuleTable.java
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package de.zedlitz.phonet4java;
+
+/**
+ * The phonetic rules of {@link PhoneticRules} compiled once per process.
+ *
+ * Every search string is split into its literal letters, an optional letter
+ * array "(...)" and the trailing flags "-", "&lt;", priority, "^", "^^" and "$".
+ * The parse result for the case that all letters of a rule matched is kept in
+ * primitive arrays indexed by rule number (index into the rule list / 3), so
+ * {@link Phonet} only has to look at the rule string again when the input
+ * itself contains flag characters.
+ *
+ * Instances are immutable after construction and can be shared between threads.
+ */
+final class PhonetRuleTable {
+    static final int HASH_COUNT = 512;
+    static final PhonetRuleTable GERMAN = new PhonetRuleTable(PhoneticRules.phonet_rules_german);
+
+    private static final String umlaut_upper = "ÀÁÂÃÅÄÆÇÐÈÉÊËÌÍÎÏÑÒÓÔÕÖØßÞÙÚÛÜÝŸ";
+    private static final String umlaut_lower = "àáâãåäæçðèéêëìíîïñòóôõöøßþùúûüýÿ";
+    private static final String letters_a_to_z = "abcdefghijklmnopqrstuvwxyz";
+    private static final String letters_A_to_Z = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final String FLAG_CHARS = "(-<^$";
+
+    /** The source rules: search string, 1st rule, 2nd rule. */
+    final String[] rules;
+
+    final int[] phonet_hash = new int[HASH_COUNT];
+    final int[] alpha_pos = new int[HASH_COUNT];
+    final int[][] phonet_hash_1 = new int[26][28];
+    final int[][] phonet_hash_2 = new int[26][28];
+    final char[] upperCase = new char[HASH_COUNT];
+
+    /** Search string of each rule, <code>null</code> if there is none. */
+    final char[][] search;
+
+    /** First position from which the rest of the search string is a part of "(-&lt;^$". */
+    final int[] flagTail;
+
+    /** End of the literal letters, i.e. the first flag character or the length. */
+    final int[] literalEnd;
+
+    /** Letters of the "(...)" array following the literal letters, <code>null</code> if none. */
+    final char[][] letterArray;
+
+    /** Number of matched letters including the letter array. */
+    final int[] matchLength;
+
+    /** Number of letters that are replaced, i.e. without the ones marked by '-'. */
+    final int[] replaceLength;
+
+    /** First character after the letter array (0 if none). */
+    final int[] flagChar;
+
+    /** Rule priority, 5 if the rule does not specify one. */
+    final int[] priority;
+
+    /** Position of the '^' / '$' conditions after all other flags are read. */
+    final int[] conditionPos;
+
+    /** Priority if the rule is used as continuation rule. */
+    final int[] continuationPriority;
+
+    /** Position of the '$' condition if the rule is used as continuation rule. */
+    final int[] continuationConditionPos;
+
+    /** Rule contains '&lt;': the replacement is fed back into the input. */
+    final boolean[] replaceInput;
+
+    /** Rule contains "^^": the rest of the input is handled as a new word. */
+    final boolean[] newWord;
+
+    private PhonetRuleTable(final String[] rules) {
+        this.rules = rules;
+
+        int count = rules.length / 3;
+        search = new char[count][];
+        flagTail = new int[count];
+        literalEnd = new int[count];
+        letterArray = new char[count][];
+        matchLength = new int[count];
+        replaceLength = new int[count];
+        flagChar = new int[count];
+        priority = new int[count];
+        conditionPos = new int[count];
+        continuationPriority = new int[count];
+        continuationConditionPos = new int[count];
+        replaceInput = new boolean[count];
+        newWord = new boolean[count];
+
+        initializeAlphabet();
+        initializeHashes();
+
+        for (int r = 0; r < count; r++) {
+            if (rules[r * 3] != null) {
+                compileRule(r, rules[r * 3]);
+            }
+        }
+    }
+
+    private void initializeAlphabet() {
+        for (int i = 0; i < HASH_COUNT; i++) {
+            upperCase[i] = (char) i;
+        }
+
+        for (int i = 0; i < letters_a_to_z.length(); i++) {
+            upperCase[letters_a_to_z.charAt(i)] = letters_A_to_Z.charAt(i);
+        }
+
+        for (int i = 0; i < umlaut_lower.length(); i++) {
+            upperCase[umlaut_lower.charAt(i)] = umlaut_upper.charAt(i);
+        }
+
+        /* German and international umlauts  */
+        for (int i = 0; i < umlaut_lower.length(); i++) {
+            char n = umlaut_upper.charAt(i);
+            alpha_pos[n] = -1 + 2;
+
+            n = umlaut_lower.charAt(i);
+            alpha_pos[n] = -1 + 2;
+        }
+
+        /*  "normal" letters ('a'-'z' and 'A'-'Z')  */
+        for (int i = 0; i < letters_a_to_z.length(); i++) {
+            char n = letters_A_to_Z.charAt(i);
+            alpha_pos[n] = i + 2;
+
+            n = letters_a_to_z.charAt(i);
+            alpha_pos[n] = i + 2;
+        }
+    }
+
+    private void initializeHashes() {
+        for (int i = 0; i < HASH_COUNT; i++) {
+            phonet_hash[i] = -1;
+        }
+
+        for (int i = 0; i < 26; i++) {
+            int[] p_hash1 = phonet_hash_1[i];
+            int[] p_hash2 = phonet_hash_2[i];
+
+            for (int k = 0; k < 28; k++) {
+                p_hash1[k] = -1;
+                p_hash2[k] = -1;
+            }
+        }
+
+        /* for each phonetc rule */
+        for (int i = 0;
+             (rules[i] == null) ||
+                     !rules[i].equals(PhoneticRules.PHONET_END); i++) {
+            String s = rules[i];
+
+            if ((s != null) && ((i % 3) == 0)) {
+                /* calculate first hash value */
+                int k = rules[i].charAt(0);
+
+                if ((phonet_hash[k] < 0) &&
+                        ((rules[i + 1] != null) ||
+                                (rules[i + 2] != null))) {
+                    phonet_hash[k] = i;
+                }
+
+                /* calculate second hash values  */
+                if ((k != 0) && (alpha_pos[k] >= 2)) {
+                    k = alpha_pos[k];
+
+                    int[] p_hash1 = phonet_hash_1[k - 2];
+                    int[] p_hash2 = phonet_hash_2[k - 2];
+                    s = s.substring(1);
+
+                    if (s.length() == 0) {
+                        s = " ";
+                    } else if (s.charAt(0) == '(') {
+                        s = s.substring(1);
+                    } else {
+                        s = "" + s.charAt(0);
+                    }
+
+                    while ((s.length() > 0) && (s.charAt(0) != ')')) {
+                        k = alpha_pos[s.charAt(0)];
+
+                        if (k > 0) {
+                            /*  add hash value for this letter  */
+                            if (p_hash1[k] < 0) {
+                                p_hash1[k] = i;
+                                p_hash2[k] = i;
+                            }
+
+                            if (p_hash2[k] >= (i - 30)) {
+                                p_hash2[k] = i;
+                            } else {
+                                k = -1;
+                            }
+                        }
+
+                        if (k <= 0) {
+                            /*  add hash value for all letters  */
+                            if (p_hash1[0] < 0) {
+                                p_hash1[0] = i;
+                            }
+
+                            p_hash2[0] = i;
+                        }
+
+                        s = s.substring(1);
+                    }
+                }
+            }
+        }
+    }
+
+    private void compileRule(final int r, final String rule) {
+        char[] s = rule.toCharArray();
+        search[r] = s;
+
+        int tail = s.length;
+
+        while ((tail > 1) && (FLAG_CHARS.indexOf(new String(s, tail - 1, s.length - tail + 1)) > -1)) {
+            tail--;
+        }
+
+        flagTail[r] = tail;
+
+        int pos = 1;
+
+        while ((pos < s.length) && (FLAG_CHARS.indexOf(s[pos]) < 0) && !Character.isDigit(s[pos])) {
+            pos++;
+        }
+
+        literalEnd[r] = pos;
+
+        int k = pos;
+
+        if ((pos < s.length) && (s[pos] == '(')) {
+            int close = rule.indexOf(')', pos);
+            letterArray[r] = rule.substring(pos + 1, close).toCharArray();
+            pos = close + 1;
+            k++;
+        }
+
+        int afterLetters = pos;
+
+        /* first rule: parse the flags as Phonet.phonet() did for every call */
+        matchLength[r] = k;
+        flagChar[r] = charAt(s, pos);
+
+        while ((charAt(s, pos) == '-') && (k > 1)) {
+            k--;
+            pos++;
+        }
+
+        if (charAt(s, pos) == '<') {
+            pos++;
+        }
+
+        priority[r] = 5;
+
+        if (Character.isDigit(charAt(s, pos))) {
+            priority[r] = s[pos] - '0';
+            pos++;
+        }
+
+        if ((charAt(s, pos) == '^') && (charAt(s, pos + 1) == '^')) {
+            pos++;
+        }
+
+        replaceLength[r] = k;
+        conditionPos[r] = pos;
+
+        /* continuation rule: '-' never shortens the match */
+        pos = afterLetters;
+
+        while (charAt(s, pos) == '-') {
+            pos++;
+        }
+
+        if (charAt(s, pos) == '<') {
+            pos++;
+        }
+
+        continuationPriority[r] = 5;
+
+        if (Character.isDigit(charAt(s, pos))) {
+            continuationPriority[r] = s[pos] - '0';
+            pos++;
+        }
+
+        continuationConditionPos[r] = pos;
+
+        replaceInput[r] = rule.indexOf('<', 1) > -1;
+        newWord[r] = rule.indexOf("^^", 1) > -1;
+    }
+
+    /**
+     * Return the pos's character of a rule, 0 if the rule is to short.
+     */
+    static char charAt(final char[] s, final int pos) {
+        char result = 0;
+
+        if (s.length > pos) {
+            result = s[pos];
+        }
+
+        return result;
+    }
+
+    /**
+     * Check if c is one of the letters of the array "(...)" that starts at
+     * position pos of rule r. Like the original implementation this looks at
+     * the whole rest of the rule.
+     */
+    boolean isInLetterArray(final int r, final int pos, final char c) {
+        char[] s = search[r];
+
+        for (int i = pos + 1; i < s.length; i++) {
+            if (s[i] == c) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Check if c is one of the letters of the compiled array of rule r.
+     */
+    boolean isInLetterArray(final int r, final char c) {
+        char[] letters = letterArray[r];
+
+        for (int i = 0; i < letters.length; i++) {
+            if (letters[i] == c) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
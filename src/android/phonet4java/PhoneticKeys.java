@@ -0,0 +1,170 @@
+/*
+ * PhoneticKeys.java
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package de.zedlitz.phonet4java;
+
+/**
+ * Primitive keys of phonetic codes.
+ *
+ * Codes of up to 7 chars that are all in the range 0-255 after case folding
+ * are packed exactly: the top byte holds the length, the following bytes the
+ * chars from left to right. All other codes are hashed with 64 bit FNV-1a
+ * and get the sign bit set, so a hash never equals a packed key.
+ */
+public final class PhoneticKeys {
+    /** Maximum number of chars a packed key holds. */
+    public static final int MAX_PACKED_LENGTH = 7;
+
+    private static final long HASHED = Long.MIN_VALUE;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private PhoneticKeys() {
+    }
+
+    /**
+     * Fold a char so that chars equal ignoring case become the same char,
+     * ASCII letters become upper case.
+     */
+    static char fold(final char c) {
+        if (c < 128) {
+            return ((c >= 'a') && (c <= 'z')) ? (char) (c - ('a' - 'A')) : c;
+        }
+
+        return Character.toUpperCase(Character.toLowerCase(c));
+    }
+
+    /**
+     * The key of a code, ignoring case.
+     */
+    public static long of(final CharSequence code) {
+        return of(code, 0, code.length());
+    }
+
+    /**
+     * The key of the code code[start, end), ignoring case.
+     */
+    public static long of(final CharSequence code, final int start, final int end) {
+        if ((end - start) <= MAX_PACKED_LENGTH) {
+            long key = length(end - start);
+
+            for (int i = start; i < end; i++) {
+                char c = fold(code.charAt(i));
+
+                if (c > 0xFF) {
+                    return hash(code, start, end);
+                }
+
+                key |= packChar(i - start, c);
+            }
+
+            return key;
+        }
+
+        return hash(code, start, end);
+    }
+
+    /**
+     * The key of the code code[start, end), ignoring case.
+     */
+    public static long of(final char[] code, final int start, final int end) {
+        if ((end - start) <= MAX_PACKED_LENGTH) {
+            long key = length(end - start);
+
+            for (int i = start; i < end; i++) {
+                char c = fold(code[i]);
+
+                if (c > 0xFF) {
+                    return hash(code, start, end);
+                }
+
+                key |= packChar(i - start, c);
+            }
+
+            return key;
+        }
+
+        return hash(code, start, end);
+    }
+
+    private static long hash(final CharSequence code, final int start, final int end) {
+        long hash = FNV_OFFSET;
+
+        for (int i = start; i < end; i++) {
+            hash = mix(hash, fold(code.charAt(i)));
+        }
+
+        return hash | HASHED;
+    }
+
+    private static long hash(final char[] code, final int start, final int end) {
+        long hash = FNV_OFFSET;
+
+        for (int i = start; i < end; i++) {
+            hash = mix(hash, fold(code[i]));
+        }
+
+        return hash | HASHED;
+    }
+
+    private static long mix(final long hash, final char c) {
+        return (((hash ^ (c & 0xFF)) * FNV_PRIME) ^ (c >>> 8)) * FNV_PRIME;
+    }
+
+    /**
+     * Whether the key is an exact packed code, i.e. {@link #toString(long)}
+     * can restore it.
+     */
+    public static boolean isPacked(final long key) {
+        return key >= 0;
+    }
+
+    /**
+     * Restore the (case folded) code of a packed key.
+     */
+    public static String toString(final long key) {
+        return appendTo(key, new StringBuilder(MAX_PACKED_LENGTH)).toString();
+    }
+
+    /**
+     * Append the (case folded) code of a packed key to out.
+     */
+    public static StringBuilder appendTo(final long key, final StringBuilder out) {
+        if (!isPacked(key)) {
+            throw new IllegalArgumentException("hashed key " + Long.toHexString(key));
+        }
+
+        int length = (int) (key >>> 56);
+
+        for (int i = 0; i < length; i++) {
+            out.append((char) ((key >>> (48 - (8 * i))) & 0xFF));
+        }
+
+        return out;
+    }
+
+    /** Length part of a packed key. */
+    static long length(final int length) {
+        return ((long) length) << 56;
+    }
+
+    /** The char at position pos of a packed key, c must be folded and at most 0xFF. */
+    static long packChar(final int pos, final char c) {
+        return ((long) c) << (48 - (8 * pos));
+    }
+}
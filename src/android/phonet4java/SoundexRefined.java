@@ -25,54 +25,41 @@ package de.zedlitz.phonet4java;
  * @author Jesper Zedlitz &lt;jze@informatik.uni-kiel.de&gt;
  *
  */
-public class SoundexRefined implements Coder {
+public class SoundexRefined implements KeyCoder {
+    /* a,b,c,d,e,f,g,h,i,j,k,l,m,n,o,p,q,r,s,t,u,v,w,x,y,z */
+    private static final int[] code =
+        {
+            0, 1, 3, 6, 0, 2, 4, 0, 0, 4, 3, 7, 8, 8, 0, 1, 5, 9, 3, 6, 0, 2,
+            0, 5, 0, 5
+        };
+
     /**
       * @see Coder#code(java.lang.String)
       */
     public String code(final String input) {
-        if ((input == null) || input.trim().length() == 0) {
-            return "Z000";
-        }
-
-        int[] code =
-            {
-                0, 1, 3, 6, 0, 2, 4, 0, 0, 4, 3, 7, 8, 8, 0, 1, 5, 9, 3, 6, 0, 2,
-                0, 5, 0, 5
-            };
-
-        /* a,b,c,d,e,f,g,h,i,j,k,l,m,n,o,p,q,r,s,t,u,v,w,x,y,z */
-        char[] key = { 'Z', '0', '0', '0', '0' };
-        char ch;
-        int last;
-        int count;
-        int scount;
-
-        String in =
-            input.toUpperCase().replace('Ä', 'A').replace('Ö', 'O')
-                 .replace('Ü', 'U').replace('ß', 's');
-
-        try {
-            key[0] = in.charAt(0);
-            last = code[key[0] - 'A'];
-            scount = 1;
-
-            for (count = 1; (count < 5) && (scount < in.length()); ++scount) {
-                ch = in.charAt(scount);
+        return SoundexTable.code(input, code, 5);
+    }
 
-                if (last != code[ch - 'A']) {
-                    last = code[ch - 'A'];
+    /**
+      * @see KeyCoder#key(java.lang.String)
+      */
+    public long key(final String input) {
+        return SoundexTable.key(input, code, 5);
+    }
 
-                    if (last != 0) {
-                        key[count++] = (char) ('0' + last);
-                    }
-                }
-            }
-        } catch (final ArrayIndexOutOfBoundsException e) {
-            // If we hit an unknown character return Z000.
-            return "Z000";
-        }
+    /**
+      * @see Coder#code(java.lang.CharSequence, int, int, java.lang.StringBuilder)
+      */
+    public void code(final CharSequence input, final int start, final int end,
+        final StringBuilder out) {
+        PhoneticKeys.appendTo(SoundexTable.key(input, start, end, code, 5), out);
+    }
 
-        return new String(key);
+    /**
+      * @see KeyCoder#key(java.lang.CharSequence, int, int)
+      */
+    public long key(final CharSequence input, final int start, final int end) {
+        return SoundexTable.key(input, start, end, code, 5);
     }
 
     @Override
@@ -0,0 +1,224 @@
+/*
+ * SoundexTable.java
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package de.zedlitz.phonet4java;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Character classification shared by {@link Soundex} and {@link SoundexRefined}.
+ *
+ * Every char is mapped to the letter 'A'-'Z' it becomes after upper-casing and
+ * folding the German umlauts, or to {@link #INVALID}. Chars that upper-case to
+ * more than one char (e.g. 'ß' to "SS") are marked {@link #EXPANDS}. The
+ * 65536 entries are kept in 256 blocks; blocks without any letter share one
+ * array.
+ */
+final class SoundexTable {
+    static final byte INVALID = -1;
+    static final byte EXPANDS = -2;
+
+    private static final long UNKNOWN = PhoneticKeys.of("Z000");
+
+    private static final byte[][] blocks = new byte[256][];
+    private static final char[] expandingChars;
+    private static final String[] expansions;
+
+    static {
+        byte[] invalidBlock = new byte[256];
+        Arrays.fill(invalidBlock, INVALID);
+
+        StringBuilder chars = new StringBuilder();
+        List<String> upper = new ArrayList<String>();
+
+        for (int b = 0; b < 256; b++) {
+            byte[] block = new byte[256];
+            boolean hasLetter = false;
+
+            for (int i = 0; i < 256; i++) {
+                char c = (char) ((b << 8) | i);
+                char u = Character.toUpperCase(c);
+
+                if (Character.isLowerCase(c)) {
+                    String s = String.valueOf(c).toUpperCase(Locale.ROOT);
+
+                    if (s.length() > 1) {
+                        chars.append(c);
+                        upper.add(fold(s));
+                        block[i] = EXPANDS;
+                        hasLetter = true;
+                        continue;
+                    }
+
+                    u = s.charAt(0);
+                }
+
+                u = fold(u);
+                block[i] = ((u >= 'A') && (u <= 'Z')) ? (byte) (u - 'A') : INVALID;
+                hasLetter |= (block[i] != INVALID);
+            }
+
+            blocks[b] = hasLetter ? block : invalidBlock;
+        }
+
+        expandingChars = chars.toString().toCharArray();
+        expansions = upper.toArray(new String[upper.size()]);
+    }
+
+    private SoundexTable() {
+    }
+
+    private static char fold(final char c) {
+        switch (c) {
+        case 'Ä':
+            return 'A';
+
+        case 'Ö':
+            return 'O';
+
+        case 'Ü':
+            return 'U';
+
+        default:
+            return c;
+        }
+    }
+
+    private static String fold(final String s) {
+        return s.replace('Ä', 'A').replace('Ö', 'O').replace('Ü', 'U');
+    }
+
+    /**
+     * Same as input.subSequence(start, end).toString().trim().length() == 0.
+     */
+    private static boolean isBlank(final CharSequence input, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (input.charAt(i) > ' ') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Letter index (0 for 'A') of a char, {@link #INVALID} or {@link #EXPANDS}.
+     */
+    static int letterOf(final char c) {
+        return blocks[c >> 8][c & 0xFF];
+    }
+
+    private static String expansionOf(final char c) {
+        return expansions[Arrays.binarySearch(expandingChars, c)];
+    }
+
+    /**
+     * Compute a Soundex code: the first letter followed by the digits of the
+     * following letters, skipping repeated digits and zeros. Any char that is
+     * not a letter before the code is complete gives "Z000".
+     *
+     * @param digits digit of each letter 'A'-'Z'
+     * @param keyLength length of the code including the first letter
+     */
+    static String code(final String input, final int[] digits, final int keyLength) {
+        return PhoneticKeys.toString(key(input, digits, keyLength));
+    }
+
+    /**
+     * The code of {@link #code(String, int[], int)} as packed
+     * {@link PhoneticKeys} key.
+     */
+    static long key(final String input, final int[] digits, final int keyLength) {
+        if (input == null) {
+            return UNKNOWN;
+        }
+
+        return key(input, 0, input.length(), digits, keyLength);
+    }
+
+    /**
+     * The key of input[start, end).
+     */
+    static long key(final CharSequence input, final int start, final int end, final int[] digits,
+        final int keyLength) {
+        if (isBlank(input, start, end)) {
+            return UNKNOWN;
+        }
+
+        long key = PhoneticKeys.length(keyLength);
+        int count = 0;
+        int last = 0;
+        int i = start;
+        String pending = null;
+        int pendingPos = 0;
+
+        while (count < keyLength) {
+            char c;
+
+            if (pending != null) {
+                c = pending.charAt(pendingPos++);
+
+                if (pendingPos == pending.length()) {
+                    pending = null;
+                }
+            } else if (i < end) {
+                c = input.charAt(i++);
+            } else {
+                break;
+            }
+
+            int letter = letterOf(c);
+
+            if (letter == EXPANDS) {
+                pending = expansionOf(c);
+                pendingPos = 0;
+                continue;
+            }
+
+            if (letter == INVALID) {
+                // if we hit an unknown character return Z000
+                return UNKNOWN;
+            }
+
+            if (count == 0) {
+                key |= PhoneticKeys.packChar(0, (char) ('A' + letter));
+                last = digits[letter];
+                count = 1;
+            } else if (last != digits[letter]) {
+                last = digits[letter];
+
+                if (last != 0) {
+                    key |= PhoneticKeys.packChar(count++, (char) ('0' + last));
+                }
+            }
+        }
+
+        if (count == 0) {
+            key |= PhoneticKeys.packChar(count++, 'Z');
+        }
+
+        while (count < keyLength) {
+            key |= PhoneticKeys.packChar(count++, '0');
+        }
+
+        return key;
+    }
+}
@@ -0,0 +1,134 @@
+package com.creative.informatics.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.Test;
+
+/**
+ * Compares {@link AttributeKeywordMatcher} with the keyword search it
+ * replaced, {@link BaselineAttributeKeywords}, on generated dictionaries:
+ * keywords with regex meta characters, punctuation and non-ASCII letters
+ * whose case folding is not one char to one char, of lengths around the 10
+ * chars above which the boundary check is skipped, and lines holding them
+ * in any case next to letters, digits and punctuation.
+ */
+public class AttributeKeywordDifferentialTest {
+    private static final int DICTIONARIES = 300;
+    private static final int LINES = 200;
+    private static final int MAX_REPORTED = 10;
+
+    private static final String[] PIECES = {
+        "total", "no", "inv", "Date", "Acc", "ship", "to", "amount", "due", "tel",
+        "straße", "ÉTÉ", "zürich", "ΣΟΣ", "Σ", "ος", "İd", "ı", "ǅ", "Ω",
+        ".", "no.", "a+b", "x*", "(a)", "[0-9]", "\\d", "$", "^", "|", "{2}",
+        ":", "-", "/", "#", " ", "1", "42", "é"
+    };
+    private static final String FILLER = "abcxyzABXZ0129 .,:;-/#()$é_İΣ";
+
+    @Test
+    public void matcherAgreesWithBaseline(){
+        Random random = new Random(20181105L);
+        StringBuilder report = new StringBuilder();
+        int lines = 0;
+        int found = 0;
+        int mismatches = 0;
+
+        for( int d=0; d<DICTIONARIES; d++ ){
+            int entries = 1 + random.nextInt(6);
+            List<BaselineAttributeKeywords> baselines = new ArrayList<BaselineAttributeKeywords>();
+            List<String> all = new ArrayList<String>();
+            AttributeKeywordMatcher matcher = new AttributeKeywordMatcher();
+
+            for( int e=0; e<entries; e++ ){
+                List<String> keywords = new ArrayList<String>();
+                int count = 1 + random.nextInt(4);
+                for( int k=0; k<count; k++ ){
+                    String keyword = keyword(random);
+                    keywords.add(keyword);
+                    all.add(keyword);
+                    matcher.add(keyword, e, k);
+                }
+                baselines.add(new BaselineAttributeKeywords(keywords));
+            }
+            matcher.build();
+
+            int[] matches = new int[entries];
+            for( int l=0; l<LINES; l++ ){
+                String line = line(random, all);
+                lines++;
+                matcher.match(line, matches);
+
+                for( int e=0; e<entries; e++ ){
+                    int expected = baselines.get(e).getIndexKeywords(line);
+                    if( expected >= 0 ) found++;
+                    if( expected != matches[e] && mismatches++ < MAX_REPORTED ){
+                        report.append("\n  '").append(line).append("' ").append(all).append(" entry ").append(e)
+                            .append(": expected ").append(expected).append(", matcher ").append(matches[e]);
+                    }
+                }
+            }
+        }
+
+        assertEquals("mismatches of " + lines + " lines (" + found + " keywords found):" + report, 0, mismatches);
+    }
+
+    /**
+     * A keyword the baseline can search: its boundary patterns must compile,
+     * or the baseline throws.
+     */
+    private static String keyword(Random random){
+        while( true ){
+            StringBuilder keyword = new StringBuilder();
+            int pieces = 1 + random.nextInt(3);
+            for( int p=0; p<pieces; p++ ) keyword.append(PIECES[random.nextInt(PIECES.length)]);
+
+            // around the length where the boundary check stops
+            if( random.nextInt(3) == 0 ){
+                int length = 9 + random.nextInt(4);
+                while( keyword.length() < length ) keyword.append(FILLER.charAt(random.nextInt(FILLER.length())));
+                keyword.setLength(length);
+            }
+
+            String key = keyword.toString().toLowerCase();
+            try {
+                Pattern.compile("[a-z0-9]" + key);
+                Pattern.compile(key + "[a-z0-9]");
+                return keyword.toString();
+            } catch (PatternSyntaxException e) {
+                // try another one
+            }
+        }
+    }
+
+    private static String line(Random random, List<String> keywords){
+        StringBuilder line = new StringBuilder();
+        int parts = 1 + random.nextInt(4);
+        for( int p=0; p<parts; p++ ){
+            int fill = random.nextInt(4);
+            for( int i=0; i<fill; i++ ) line.append(FILLER.charAt(random.nextInt(FILLER.length())));
+
+            String keyword = keywords.get(random.nextInt(keywords.size()));
+            switch( random.nextInt(4) ){
+            case 0:
+                line.append(keyword.toUpperCase());
+                break;
+            case 1:
+                line.append(keyword.toLowerCase());
+                break;
+            case 2:
+                line.append(PIECES[random.nextInt(PIECES.length)]);
+                break;
+            default:
+                line.append(keyword);
+                break;
+            }
+        }
+        return line.toString();
+    }
+}
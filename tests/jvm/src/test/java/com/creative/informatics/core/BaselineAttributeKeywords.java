@@ -0,0 +1,46 @@
+package com.creative.informatics.core;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The keyword search of attribute entries before {@link AttributeKeywordMatcher},
+ * OCRDictionary.getIndexKeywords() and checkContainKeyword() of
+ * OcrCaptureFragment, kept as the reference of the differential test.
+ */
+final class BaselineAttributeKeywords {
+    private final List<String> keywords;
+
+    BaselineAttributeKeywords(List<String> keywords){
+        this.keywords = keywords;
+    }
+
+    public int getIndexKeywords(String string){
+        for(int i=0; i<keywords.size(); i++){
+            String key = keywords.get(i);
+            if( checkContainKeyword(key, string) )
+                return i;
+        }
+        return -1;
+    }
+
+    private boolean checkContainKeyword(String key, String container){
+        String sKey = key.toLowerCase();
+        String sContainer = container.toLowerCase();
+        if( sContainer.contains(sKey) ){
+            if( sKey.length() > 10 ) return true;
+
+            Pattern p = Pattern.compile("[a-z0-9]"+sKey);
+            if (p.matcher(container).find())
+                return false;
+
+            p = Pattern.compile(sKey+"[a-z0-9]");
+            if( p.matcher(container).find())
+                return false;
+
+            return true;
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,123 @@
+package com.creative.informatics.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The neighbour searches before {@link LineGrid}, kept as the reference of
+ * the differential test: the scans of find_value_in_right(),
+ * find_value_in_below() and checkServiceAddressEx() of OcrDetectorProcessor,
+ * on boxes {left, top, right, bottom} in table order instead of Text objects.
+ */
+final class BaselineLineNeighbours {
+    private final List<Rect> boxes = new ArrayList<Rect>();
+
+    BaselineLineNeighbours(int[][] lines){
+        for( int[] line : lines ) boxes.add(new Rect(line[0], line[1], line[2], line[3]));
+    }
+
+    int find_value_in_right(int keyword){
+        Rect rcKeyword = new Rect(boxes.get(keyword));
+        ArrayList<Rect> result = new ArrayList<Rect>();
+        for( Rect rcText : boxes ){
+            if( Math.abs(rcText.top-rcKeyword.top) > 10 ) continue;
+            if( rcKeyword.right > rcText.left) continue;
+
+            result.add(rcText);
+        }
+
+        if( result.isEmpty() ) return -1;
+
+        Collections.sort(result, new Comparator<Rect>() {
+            @Override
+            public int compare(Rect o1, Rect o2) {
+                return o1.left - o2.left;
+            }
+        });
+
+        return boxes.indexOf(result.get(0));
+    }
+
+    /**
+     * The search of find_value_in_below() among the lines [start, end), the
+     * lines of the keyword's block or all lines.
+     */
+    int find_value_in_below(int keyword, int start, int end){
+        Rect rcKeyword = new Rect(boxes.get(keyword));
+        List<Rect> components = boxes.subList(start, end);
+
+        for( Rect rcText : components){
+            if( (rcKeyword.bottom-10) > rcText.top || rcKeyword.left > rcText.right) continue;
+
+            Rect union = new Rect(rcKeyword);
+            union.union(rcText);
+            Boolean best = true;
+            for(Rect item : components){
+                if( item == rcText || item == boxes.get(keyword)) continue;
+                if( Rect.intersects(union, item)) {
+                    best = false;
+                    break;
+                }
+            }
+            if( best ){
+                return boxes.indexOf(rcText);
+            }
+        }
+        return -1;
+    }
+
+    int find_first_address_line(int secAddr){
+        Rect firstAddressText = null;
+        for( Rect text : boxes ){
+            if (boxes.get(secAddr).top <= text.top)
+                continue;
+
+            if (firstAddressText == null)
+                firstAddressText = text;
+            else if (firstAddressText.top < text.top)
+                firstAddressText = text;
+        }
+        return firstAddressText == null ? -1 : boxes.indexOf(firstAddressText);
+    }
+
+    /**
+     * The parts of android.graphics.Rect the scans use. Equality is identity,
+     * so indexOf() finds the line itself among equal boxes.
+     */
+    static final class Rect {
+        int left, top, right, bottom;
+
+        Rect(int left, int top, int right, int bottom){
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+        }
+
+        Rect(Rect r){
+            this(r.left, r.top, r.right, r.bottom);
+        }
+
+        void union(Rect r){
+            if( r.left < r.right && r.top < r.bottom ){
+                if( left < right && top < bottom ){
+                    if( left > r.left ) left = r.left;
+                    if( top > r.top ) top = r.top;
+                    if( right < r.right ) right = r.right;
+                    if( bottom < r.bottom ) bottom = r.bottom;
+                } else {
+                    left = r.left;
+                    top = r.top;
+                    right = r.right;
+                    bottom = r.bottom;
+                }
+            }
+        }
+
+        static boolean intersects(Rect a, Rect b){
+            return a.left < b.right && b.left < a.right && a.top < b.bottom && b.top < a.bottom;
+        }
+    }
+}
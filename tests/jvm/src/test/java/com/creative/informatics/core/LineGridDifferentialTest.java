@@ -0,0 +1,113 @@
+package com.creative.informatics.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares the neighbour queries of {@link LineGrid} with the scans over all
+ * lines they replaced, {@link BaselineLineNeighbours}, on random layouts:
+ * rows of lines with equal tops, columns with equal lefts, overlapping
+ * lines, and empty or inverted boxes. Small tables are scanned by the grid
+ * too, so the layouts go from a few lines to a few hundred.
+ */
+public class LineGridDifferentialTest {
+    private static final int LAYOUTS = 400;
+    private static final int MAX_REPORTED = 10;
+
+    @Test
+    public void gridMatchesBaseline(){
+        Random random = new Random(20170822L);
+        LineTable<Object> table = new LineTable<Object>();
+        LineGrid grid = new LineGrid();
+        StringBuilder report = new StringBuilder();
+        int queries = 0;
+        int mismatches = 0;
+
+        for( int l=0; l<LAYOUTS; l++ ){
+            int[][] boxes = layout(random, l % 4 == 0 ? 100 + random.nextInt(300) : 1 + random.nextInt(40));
+
+            table.clear();
+            for( int i=0; i<boxes.length; i++ ){
+                if( i == 0 || random.nextInt(6) == 0 ) table.startBlock();
+                table.add(null, "", boxes[i][0], boxes[i][1], boxes[i][2], boxes[i][3]);
+            }
+            grid.build(table);
+            BaselineLineNeighbours baseline = new BaselineLineNeighbours(boxes);
+
+            for( int line=0; line<boxes.length; line++ ){
+                int block = table.getBlock(line);
+                int start = table.getBlockStart(block), end = table.getBlockEnd(block);
+                int[] expected = {
+                    baseline.find_value_in_right(line),
+                    baseline.find_value_in_below(line, start, end),
+                    baseline.find_value_in_below(line, 0, boxes.length),
+                    baseline.find_first_address_line(line)
+                };
+                int[] actual = {
+                    grid.findRight(line, LineLayout.ROW_OFFSET),
+                    grid.findBelow(line, LineLayout.ROW_OFFSET, start, end),
+                    grid.findBelow(line, LineLayout.ROW_OFFSET, 0, boxes.length),
+                    grid.findAbove(line)
+                };
+                queries += expected.length;
+
+                for( int q=0; q<expected.length; q++ ){
+                    if( expected[q] != actual[q] && mismatches++ < MAX_REPORTED ){
+                        report.append("\n  layout ").append(l).append(" of ").append(boxes.length).append(" lines, line ")
+                            .append(line).append(", query ").append(q).append(": expected ").append(expected[q])
+                            .append(", grid ").append(actual[q]);
+                    }
+                }
+            }
+        }
+
+        assertEquals("mismatches of " + queries + " queries:" + report, 0, mismatches);
+    }
+
+    /**
+     * Lines on a coarse grid of positions, so that many share a top or a
+     * left, some of them overlapping, empty or inverted.
+     */
+    private static int[][] layout(Random random, int lines){
+        int[][] boxes = new int[lines][];
+        int span = 20 + lines * 4;
+        for( int i=0; i<lines; i++ ){
+            int left = random.nextInt(span / 10) * 10 + (random.nextInt(4) == 0 ? random.nextInt(10) : 0);
+            int top = random.nextInt(span / 10) * 10 + (random.nextInt(4) == 0 ? random.nextInt(12) : 0);
+            int width = 5 + random.nextInt(80);
+            int height = 4 + random.nextInt(20);
+
+            switch( random.nextInt(10) ){
+            case 0:
+                width = 0;
+                break;
+            case 1:
+                height = 0;
+                break;
+            case 2:
+                width = -width;
+                break;
+            case 3:
+                height = -height;
+                break;
+            case 4:
+                // a copy of an earlier line, or overlapping it
+                if( i > 0 ){
+                    int[] other = boxes[random.nextInt(i)];
+                    left = other[0] + random.nextInt(3) * 5;
+                    top = other[1] + random.nextInt(3) * 4;
+                    width = other[2] - other[0];
+                    height = other[3] - other[1];
+                }
+                break;
+            default:
+                break;
+            }
+            boxes[i] = new int[] { left, top, left + width, top + height };
+        }
+        return boxes;
+    }
+}
@@ -0,0 +1,107 @@
+package com.creative.informatics.core;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.zedlitz.phonet4java.BenchmarkTexts;
+import de.zedlitz.phonet4java.DaitchMokotoffCodes;
+
+/**
+ * The phonetic cache of {@link MetaEngineController} on a replayed frame
+ * sequence: the 40 lines of a page read frame after frame, each line misread
+ * in one char in 15% of the frames. Every operation is one frame, whose lines
+ * are coded for their first 1 to 4 words as keyword matching does.
+ * The hits and misses of the cache are reported per iteration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PhoneticCacheBenchmark {
+    private static final int LINES = 40;
+    private static final int FRAMES = 500;
+    private static final int MAX_WORDS = 4;
+    private static final String MISREADS = "0O1lI5S8B";
+
+    @Param({"Phonet2", "KoelnerPhonetik", "DaitchMokotoff"})
+    public String engine;
+
+    /** 0 disables the cache. */
+    @Param({"0", "65536"})
+    public int cacheSize;
+
+    private String[][] frames;
+    private int frame;
+    private MetaEngineController controller;
+    private final DaitchMokotoffCodes lineCodes = new DaitchMokotoffCodes();
+
+    /**
+     * Cache hits and misses, summed over an iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class CacheCounters {
+        public long hits;
+        public long misses;
+
+        @Setup(Level.Iteration)
+        public void reset(){
+            hits = 0;
+            misses = 0;
+        }
+    }
+
+    @Setup
+    public void setUp(){
+        String[] page = BenchmarkTexts.lines(LINES);
+        Random random = new Random(4);
+        frames = new String[FRAMES][];
+        for( int f=0; f<FRAMES; f++ ){
+            frames[f] = new String[LINES];
+            for( int i=0; i<LINES; i++ ){
+                frames[f][i] = random.nextInt(100) < 15 ? misread(page[i], random) : page[i];
+            }
+        }
+
+        controller = new MetaEngineController("de.zedlitz.phonet4java." + engine);
+        controller.setPhoneticCacheSize(cacheSize);
+    }
+
+    private static String misread(String text, Random random){
+        char[] chars = text.toCharArray();
+        chars[random.nextInt(chars.length)] = MISREADS.charAt(random.nextInt(MISREADS.length()));
+        return new String(chars);
+    }
+
+    @Benchmark
+    public void frame(CacheCounters counters, Blackhole blackhole){
+        long hits = controller.getPhoneticCacheHits();
+        long misses = controller.getPhoneticCacheMisses();
+        boolean codes = controller.hasPhoneticCodes();
+
+        for( String text : frames[frame] ){
+            int words = 0;
+            for( int end=0; end<=text.length() && words<MAX_WORDS; end++ ){
+                if( end < text.length() && text.charAt(end) != ' ' ) continue;
+                if( codes ) blackhole.consume(controller.getPhoneticCodes(text, 0, end, lineCodes).size());
+                else blackhole.consume(controller.getPhoneticKey(text, 0, end));
+                words++;
+            }
+        }
+        frame = (frame + 1) % FRAMES;
+
+        counters.hits += controller.getPhoneticCacheHits() - hits;
+        counters.misses += controller.getPhoneticCacheMisses() - misses;
+    }
+}
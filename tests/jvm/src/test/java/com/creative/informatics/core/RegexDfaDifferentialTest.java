@@ -0,0 +1,243 @@
+package com.creative.informatics.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Compares {@link RegexDfa} with java.util.regex on patterns generated from
+ * the supported subset, over random text and OCR-like lines: both must find
+ * the same first match. Some generated patterns make java.util.regex
+ * backtrack for minutes on some texts; those pairs are skipped. Patterns outside the subset must be left to
+ * java.util.regex by {@link ValuePatternSet}, and a match that takes too
+ * long there must be abandoned.
+ */
+public class RegexDfaDifferentialTest {
+    private static final int PATTERNS = 3000;
+    private static final int TEXTS = 300;
+    private static final int MAX_REPORTED = 10;
+    private static final long REFERENCE_TIME_LIMIT = 100000000L;   // ns per java.util.regex match
+
+    private static final String LITERALS = "abcxyzABXZ019 -:,/é";
+    private static final String ESCAPED = ".$()[]{}*+?|\\^";
+    private static final String[] CLASSES = {
+        "\\d", "\\w", "\\s", "\\D", "\\W", "\\S", ".",
+        "[a-c]", "[A-Z]", "[0-9]", "[^0-9]", "[a-z0-9]", "[^a-z ]", "[.,:]", "[-/]", "[éÉa]", "[\\d.]"
+    };
+    private static final String[] QUANTIFIERS = {
+        "?", "*", "+", "{2}", "{1,3}", "{0,2}", "{2,}"
+    };
+    private static final String TEXT_CHARS = "abcxyzABXZ0123456789 -:,./$()é\tÉ_ü";
+    private static final String[] OCR_LINES = {
+        "Invoice No: 12345", "TOTAL $ 1,234.56", "Date 12/03/2019", "Tel. (040) 555-0199",
+        "Straße 12, 20095 Hamburg", "ACCOUNT NO.: A-77/9", "email: info@example.com", "ÉTÉ 2019 - Zürich",
+        "a1b2c3", "   ", "x:y:z", "Amount due:  99.00 EUR"
+    };
+
+    private static List<String> patterns;
+    private static List<String> texts;
+
+    @BeforeClass
+    public static void generateInputs(){
+        Random random = new Random(20190312L);
+
+        patterns = new ArrayList<String>(PATTERNS);
+        for( int i=0; i<PATTERNS; i++ ){
+            String pattern = alternation(random, 0);
+            if( random.nextInt(5) == 0 ) pattern = "^" + pattern;
+            if( random.nextInt(5) == 0 ) pattern = pattern + "$";
+            patterns.add(pattern);
+        }
+
+        texts = new ArrayList<String>(TEXTS + OCR_LINES.length);
+        texts.addAll(Arrays.asList(OCR_LINES));
+        texts.add("");
+        for( int i=0; i<TEXTS; i++ ){
+            if( random.nextBoolean() ){
+                char[] text = new char[random.nextInt(30)];
+                for( int c=0; c<text.length; c++ ) text[c] = TEXT_CHARS.charAt(random.nextInt(TEXT_CHARS.length()));
+                texts.add(new String(text));
+            } else {
+                String line = OCR_LINES[random.nextInt(OCR_LINES.length)];
+                texts.add(random.nextBoolean() ? line.toUpperCase() : line.toLowerCase());
+            }
+        }
+    }
+
+    private static String alternation(Random random, int depth){
+        StringBuilder pattern = new StringBuilder(concatenation(random, depth));
+        while( random.nextInt(4) == 0 ) pattern.append('|').append(concatenation(random, depth));
+        return pattern.toString();
+    }
+
+    private static String concatenation(Random random, int depth){
+        StringBuilder pattern = new StringBuilder();
+        int atoms = 1 + random.nextInt(4);
+        for( int i=0; i<atoms; i++ ){
+            pattern.append(atom(random, depth));
+            if( random.nextInt(3) == 0 ){
+                pattern.append(QUANTIFIERS[random.nextInt(QUANTIFIERS.length)]);
+                if( random.nextInt(4) == 0 ) pattern.append('?');
+            }
+        }
+        return pattern.toString();
+    }
+
+    private static String atom(Random random, int depth){
+        switch( random.nextInt(depth < 2 ? 6 : 4) ){
+        case 0:
+        case 1:
+            return String.valueOf(LITERALS.charAt(random.nextInt(LITERALS.length())));
+        case 2:
+            return "\\" + ESCAPED.charAt(random.nextInt(ESCAPED.length()));
+        case 3:
+            return CLASSES[random.nextInt(CLASSES.length)];
+        case 4:
+            return "(" + alternation(random, depth + 1) + ")";
+        default:
+            return "(?:" + alternation(random, depth + 1) + ")";
+        }
+    }
+
+    @Test
+    public void findMatchesJavaUtilRegex() throws Exception {
+        int[] range = new int[2];
+        StringBuilder report = new StringBuilder();
+        int compiled = 0;
+        int compared = 0;
+        int skipped = 0;
+        int mismatches = 0;
+
+        for( String pattern : patterns ){
+            RegexDfa dfa;
+            try {
+                dfa = RegexDfa.compile(pattern, true, RegexDfa.DEFAULT_MAX_STATES);
+            } catch (RegexDfa.UnsupportedPatternException e) {
+                continue;
+            }
+            compiled++;
+
+            Matcher matcher = Pattern.compile("(?i:" + pattern + ")").matcher("");
+            for( String text : texts ){
+                if( !dfa.supports(text) ) continue;
+
+                boolean expected;
+                try {
+                    expected = matcher.reset(new DeadlineText(text)).find();
+                } catch (DeadlineText.Expired e) {
+                    skipped++;
+                    continue;
+                }
+                compared++;
+
+                boolean actual = dfa.find(text, range);
+                if( expected != actual || (expected && (matcher.start() != range[0] || matcher.end() != range[1])) ){
+                    if( mismatches++ < MAX_REPORTED ){
+                        report.append("\n  /").append(pattern).append("/ on '").append(text).append("': expected ")
+                            .append(expected ? matcher.start() + "-" + matcher.end() : "none").append(", dfa ")
+                            .append(actual ? range[0] + "-" + range[1] : "none");
+                    }
+                }
+            }
+        }
+
+        // most generated patterns must be in the subset, or the test compares little
+        assertTrue("compiled " + compiled + " of " + PATTERNS, compiled > PATTERNS * 3 / 4);
+        assertTrue("skipped " + skipped + " of " + (compared + skipped), skipped * 100 < compared);
+        assertEquals("mismatches of " + compared + " pattern/text pairs:" + report, 0, mismatches);
+    }
+
+    @Test
+    public void unsupportedPatternsFallBack(){
+        List<String> unsupported = Arrays.asList(
+            "\\d+(?=:)",
+            "(\\w)\\1",
+            "\\bno\\b",
+            "\\d++:",
+            "(a*)*b",
+            "a^b"
+        );
+        String[] lines = { "No: 12:", "aab noon no", "x no x", "aaab", "ab", "a^b" };
+
+        for( String pattern : unsupported ){
+            ValuePatternSet set = new ValuePatternSet(Collections.singletonList(pattern), true, 0);
+            assertFalse(pattern, set.isLinearTime(0));
+            assertNotNull(pattern, set.getFallbackReason(0));
+
+            Matcher matcher = Pattern.compile("(?i:" + pattern + ")").matcher("");
+            for( String line : lines ){
+                ValuePatternSet.Match match = set.match(line);
+                String expected = matcher.reset(line).find() && matcher.end() > matcher.start() ? matcher.group() : null;
+                assertEquals("/" + pattern + "/ on '" + line + "'", expected, match == null ? null : match.value);
+            }
+        }
+    }
+
+    @Test
+    public void catastrophicPatternIsAbandoned(){
+        // the lookahead keeps the pattern with java.util.regex
+        ValuePatternSet set = new ValuePatternSet(Collections.singletonList("(.*a){12}(?=b)"), true, 50);
+        assertFalse(set.isLinearTime(0));
+
+        StringBuilder text = new StringBuilder();
+        for( int i=0; i<40; i++ ) text.append('a');
+        text.append("-b");
+
+        long start = System.nanoTime();
+        assertNull(set.match(text));
+        assertEquals(1, set.getTimeoutCount());
+        assertTrue("took " + (System.nanoTime() - start) / 1000000 + " ms", System.nanoTime() - start < 5000000000L);
+    }
+
+    /**
+     * A text that java.util.regex may read for REFERENCE_TIME_LIMIT only.
+     */
+    private static final class DeadlineText implements CharSequence {
+        private final String mText;
+        private final long mDeadline;
+        private int mReads;
+
+        DeadlineText(String text){
+            mText = text;
+            mDeadline = System.nanoTime() + REFERENCE_TIME_LIMIT;
+        }
+
+        @Override
+        public char charAt(int index){
+            if( (++mReads & 0xFFF) == 0 && System.nanoTime() > mDeadline ) throw new Expired();
+            return mText.charAt(index);
+        }
+
+        @Override
+        public int length(){
+            return mText.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end){
+            return mText.substring(start, end);
+        }
+
+        @Override
+        public String toString(){
+            return mText;
+        }
+
+        static final class Expired extends RuntimeException {
+            private static final long serialVersionUID = 1L;
+        }
+    }
+}
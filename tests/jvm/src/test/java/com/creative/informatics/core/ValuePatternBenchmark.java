@@ -0,0 +1,88 @@
+package com.creative.informatics.core;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Value patterns on their worst-case inputs, texts they do not match:
+ * a nested repetition, which java.util.regex memoizes since JDK 9 but
+ * Android's ICU-based matcher backtracks exponentially, and repetitions of
+ * .* that make any backtracking matcher polynomial of the pattern's degree.
+ * The same patterns are matched by java.util.regex alone, by java.util.regex
+ * with the default time limit of the options, and by {@link RegexDfa}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ValuePatternBenchmark {
+    private static final int TIME_LIMIT = 50;      // ms, the default valuePatternTimeLimit
+    private static final String[] PATTERNS = {
+        "(a+)+b",
+        "(.*a){6}b",
+        "(.*\\d){6}:"
+    };
+    private static final String[] UNITS = {
+        "a",
+        "a",
+        "1"
+    };
+    // the char the pattern ends with, where the pattern cannot match it
+    private static final String[] ENDS = {
+        "-b",
+        "-b",
+        "-:"
+    };
+
+    /** Index of the pattern. */
+    @Param({"0", "1", "2"})
+    public int pattern;
+
+    /** Length of the text, in repetitions of the unit the pattern repeats. */
+    @Param({"8", "16", "32"})
+    public int length;
+
+    private String text;
+    private ValuePatternSet regex;
+    private ValuePatternSet timeLimited;
+    private ValuePatternSet linear;
+
+    @Setup
+    public void setUp(){
+        StringBuilder builder = new StringBuilder();
+        for( int i=0; i<length; i++ ) builder.append(UNITS[pattern]);
+        text = builder.append(ENDS[pattern]).toString();
+
+        regex = new ValuePatternSet(Arrays.asList(PATTERNS[pattern]), false, 0);
+        timeLimited = new ValuePatternSet(Arrays.asList(PATTERNS[pattern]), false, TIME_LIMIT);
+        linear = new ValuePatternSet(Arrays.asList(PATTERNS[pattern]), true, TIME_LIMIT);
+
+        if( !linear.isLinearTime(0) )
+            throw new IllegalStateException(PATTERNS[pattern] + ": " + linear.getFallbackReason(0));
+        if( regex.match(text) != null || linear.match(text) != null )
+            throw new IllegalStateException(PATTERNS[pattern] + " matches " + text);
+    }
+
+    @Benchmark
+    public Object regex(){
+        return regex.match(text);
+    }
+
+    @Benchmark
+    public Object regexTimeLimit(){
+        return timeLimited.match(text);
+    }
+
+    @Benchmark
+    public Object linear(){
+        return linear.match(text);
+    }
+}
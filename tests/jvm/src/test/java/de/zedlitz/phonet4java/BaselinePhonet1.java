@@ -0,0 +1,41 @@
+/*
+ * BaselinePhonet1.java
+ * 
+ * Copyright (c) 2009, Jesper Zedlitz. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package de.zedlitz.phonet4java;
+
+
+/**
+ * Phonet1 as it was before the rewrite, see {@link BaselinePhonet}.
+ *
+ * @author Jesper Zedlitz &lt;jze@informatik.uni-kiel.de&gt;
+ *
+ */
+public class BaselinePhonet1 extends BaselinePhonet {
+    /**
+      * @see de.zedlitz.phonet4java.Coder#code(java.lang.String)
+      */
+    public String code(final String input) {
+        return this.phonet(input, 1);
+    }
+
+    public String getEngineId() {
+        return BaselinePhonet1.class.getName();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * BenchmarkTexts.java
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package de.zedlitz.phonet4java;
+
+import java.util.Random;
+
+/**
+ * Texts like those the coders get from OCR, generated from a fixed seed so
+ * that runs are comparable: single words, lines of a bill, and noisy lines
+ * full of digits, punctuation and misread letters.
+ */
+public final class BenchmarkTexts {
+    private static final String[] WORDS = {
+        "Account", "Number", "Invoice", "Date", "Total", "Amount", "Due",
+        "Customer", "Name", "Supply", "Address", "Service", "Period",
+        "Payment", "Reference", "Energy", "Usage", "Rechnung", "Kunde",
+        "Nummer", "Betrag", "Zahlung", "Straße", "Schmidt", "Müller",
+        "Kontonummer", "Zählerstand", "Verbrauch", "Abschlag", "Lieferstelle"
+    };
+    private static final String NOISE = "0123456789.,:;-/$#'()|_ ";
+    private static final String MISREADS = "0O1lI5S8B";
+
+    private BenchmarkTexts() {
+    }
+
+    /** Single words. */
+    public static String[] words(final int count) {
+        final Random random = new Random(1);
+        final String[] texts = new String[count];
+        for (int i = 0; i < count; i++) {
+            texts[i] = WORDS[random.nextInt(WORDS.length)];
+        }
+        return texts;
+    }
+
+    /** Lines of a bill, 2 to 6 words and numbers. */
+    public static String[] lines(final int count) {
+        final Random random = new Random(2);
+        final String[] texts = new String[count];
+        for (int i = 0; i < count; i++) {
+            texts[i] = line(random);
+        }
+        return texts;
+    }
+
+    /** Lines with misread letters, digits and punctuation. */
+    public static String[] noisyLines(final int count) {
+        final Random random = new Random(3);
+        final String[] texts = new String[count];
+        for (int i = 0; i < count; i++) {
+            final char[] line = line(random).toCharArray();
+            for (int c = 0; c < line.length; c++) {
+                final int r = random.nextInt(10);
+                if (r == 0) {
+                    line[c] = NOISE.charAt(random.nextInt(NOISE.length()));
+                } else if (r == 1) {
+                    line[c] = MISREADS.charAt(random.nextInt(MISREADS.length()));
+                }
+            }
+            texts[i] = new String(line);
+        }
+        return texts;
+    }
+
+    /**
+     * The texts of a kind: "word", "line" or "noisy".
+     */
+    public static String[] of(final String kind, final int count) {
+        if ("word".equals(kind)) {
+            return words(count);
+        }
+        if ("line".equals(kind)) {
+            return lines(count);
+        }
+        if ("noisy".equals(kind)) {
+            return noisyLines(count);
+        }
+        throw new IllegalArgumentException(kind);
+    }
+
+    private static String line(final Random random) {
+        final StringBuilder line = new StringBuilder();
+        final int words = 2 + random.nextInt(5);
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                line.append(random.nextInt(6) == 0 ? ": " : " ");
+            }
+            if (random.nextInt(4) == 0) {
+                line.append(random.nextInt(1000000));
+            } else {
+                line.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * DaitchMokotoffBenchmark.java
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package de.zedlitz.phonet4java;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The first-character trie of DaitchMokotoff against the linear rule scan
+ * of {@link BaselineDaitchMokotoff}, coding 1000 texts per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DaitchMokotoffBenchmark {
+    @Param({"word", "line", "noisy"})
+    public String kind;
+
+    private String[] texts;
+    private BaselineDaitchMokotoff scanner;
+    private DaitchMokotoff trie;
+
+    @Setup
+    public void setUp() {
+        texts = BenchmarkTexts.of(kind, 1000);
+        scanner = new BaselineDaitchMokotoff();
+        trie = new DaitchMokotoff();
+        for (final String text : texts) {
+            if (!scanner.code(text).equals(trie.code(text))) {
+                throw new IllegalStateException("different codes of '" + text + "'");
+            }
+        }
+    }
+
+    @Benchmark
+    public void scanner(final Blackhole blackhole) {
+        for (final String text : texts) {
+            blackhole.consume(scanner.code(text));
+        }
+    }
+
+    @Benchmark
+    public void trie(final Blackhole blackhole) {
+        for (final String text : texts) {
+            blackhole.consume(trie.code(text));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * KoelnerPhonetikBenchmark.java
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package de.zedlitz.phonet4java;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The single-pass KoelnerPhonetik against the StringBuilder and
+ * deleteCharAt passes of {@link BaselineKoelnerPhonetik}, coding 1000 texts
+ * per operation, as Strings and into a reused buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class KoelnerPhonetikBenchmark {
+    @Param({"word", "line", "noisy"})
+    public String kind;
+
+    private String[] texts;
+    private BaselineKoelnerPhonetik baseline;
+    private KoelnerPhonetik coder;
+    private final StringBuilder buffer = new StringBuilder();
+
+    @Setup
+    public void setUp() {
+        texts = BenchmarkTexts.of(kind, 1000);
+        baseline = new BaselineKoelnerPhonetik();
+        coder = new KoelnerPhonetik();
+        for (final String text : texts) {
+            buffer.setLength(0);
+            coder.code(text, 0, text.length(), buffer);
+            final String expected = baseline.code(text);
+            if (!expected.equals(coder.code(text)) || !expected.contentEquals(buffer)) {
+                throw new IllegalStateException("different codes of '" + text + "'");
+            }
+        }
+    }
+
+    @Benchmark
+    public void baseline(final Blackhole blackhole) {
+        for (final String text : texts) {
+            blackhole.consume(baseline.code(text));
+        }
+    }
+
+    @Benchmark
+    public void singlePass(final Blackhole blackhole) {
+        for (final String text : texts) {
+            blackhole.consume(coder.code(text));
+        }
+    }
+
+    @Benchmark
+    public void singlePassIntoBuffer(final Blackhole blackhole) {
+        for (final String text : texts) {
+            buffer.setLength(0);
+            coder.code(text, 0, text.length(), buffer);
+            blackhole.consume(buffer.length());
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * PhonetDifferentialTest.java
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package de.zedlitz.phonet4java;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Compares Phonet1 and Phonet2 with their implementation before the rewrite
+ * on reusable char buffers, {@link BaselinePhonet}, over a large generated
+ * word list: German-like words, OCR lines and random text with umlauts,
+ * accents, digits and punctuation.
+ */
+public class PhonetDifferentialTest {
+    private static final int WORDS = 120000;
+    private static final int LINES = 40000;
+    private static final int NOISE = 40000;
+    private static final int MAX_REPORTED = 10;
+
+    private static final String[] SYLLABLES = {
+        "sch", "ch", "ck", "ei", "ie", "au", "eu", "äu", "ph", "th", "qu",
+        "tz", "st", "sp", "pf", "ae", "oe", "ue", "ß", "ä", "ö", "ü", "er",
+        "en", "el", "an", "in", "un", "ge", "be", "ver", "mann", "mei", "er",
+        "dt", "ng", "nk", "chs", "x", "y", "v", "w", "z", "c", "j", "h"
+    };
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+    private static final String NOISE_CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ"
+        + "ÀÁÂÃÅÄÆÇÐÈÉÊËÌÍÎÏÑÒÓÔÕÖØßÞÙÚÛÜÝŸàáâãåäæçðèéêëìíîïñòóôõöøþùúûüýÿ"
+        + "0123456789 .,:;-/$#'()_@";
+
+    private static List<String> inputs;
+
+    @BeforeClass
+    public static void generateInputs() {
+        final Random random = new Random(20090101L);
+        inputs = new ArrayList<String>(WORDS + LINES + NOISE);
+
+        for (int i = 0; i < WORDS; i++) {
+            inputs.add(word(random));
+        }
+        for (int i = 0; i < LINES; i++) {
+            final StringBuilder line = new StringBuilder();
+            final int words = 1 + random.nextInt(6);
+            for (int w = 0; w < words; w++) {
+                if (w > 0) {
+                    line.append(random.nextInt(8) == 0 ? ": " : " ");
+                }
+                line.append(random.nextInt(5) == 0
+                    ? Integer.toString(random.nextInt(100000)) : word(random));
+            }
+            inputs.add(line.toString());
+        }
+        for (int i = 0; i < NOISE; i++) {
+            final char[] text = new char[random.nextInt(40)];
+            for (int c = 0; c < text.length; c++) {
+                text[c] = NOISE_CHARS.charAt(random.nextInt(NOISE_CHARS.length()));
+            }
+            inputs.add(new String(text));
+        }
+        inputs.add("");
+        inputs.add(" ");
+    }
+
+    private static String word(final Random random) {
+        final StringBuilder word = new StringBuilder();
+        final int parts = 1 + random.nextInt(5);
+        for (int p = 0; p < parts; p++) {
+            word.append(random.nextBoolean()
+                ? SYLLABLES[random.nextInt(SYLLABLES.length)]
+                : String.valueOf(LETTERS.charAt(random.nextInt(LETTERS.length()))));
+        }
+        switch (random.nextInt(4)) {
+        case 0:
+            return word.toString().toUpperCase();
+        case 1:
+            return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+        default:
+            return word.toString();
+        }
+    }
+
+    @Test
+    public void phonet1MatchesBaseline() {
+        assertSame(new BaselinePhonet1(), new Phonet1(), 1, inputs);
+    }
+
+    @Test
+    public void phonet2MatchesBaseline() {
+        assertSame(new BaselinePhonet2(), new Phonet2(), 2, inputs);
+    }
+
+    /**
+     * The scratch buffers are per thread, so threads sharing a coder must
+     * not see each other's text.
+     */
+    @Test
+    public void sharedCoderMatchesBaselineOnSeveralThreads() throws Exception {
+        final Phonet1 phonet1 = new Phonet1();
+        final Phonet2 phonet2 = new Phonet2();
+        final int threads = 4;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int t = 0; t < threads; t++) {
+                final int first = t;
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call() {
+                        final List<String> part = new ArrayList<String>();
+                        for (int i = first; i < inputs.size(); i += threads) {
+                            part.add(inputs.get(i));
+                        }
+                        assertSame(new BaselinePhonet1(), phonet1, 1, part);
+                        assertSame(new BaselinePhonet2(), phonet2, 2, part);
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void assertSame(final BaselinePhonet baseline, final Coder coder,
+        final int mode, final List<String> words) {
+        final StringBuilder out = new StringBuilder();
+        final StringBuilder report = new StringBuilder();
+        int mismatches = 0;
+
+        for (final String word : words) {
+            final String expected = baseline.phonet(word, mode);
+            final String actual = coder.code(word);
+
+            // the range form, on the word inside a longer line
+            out.setLength(0);
+            coder.code("<" + word + ">", 1, word.length() + 1, out);
+
+            if (!expected.equals(actual) || !expected.contentEquals(out)) {
+                if (mismatches++ < MAX_REPORTED) {
+                    report.append("\n  '").append(word).append("': expected '").append(expected)
+                        .append("', code '").append(actual).append("', range '").append(out).append("'");
+                }
+            }
+        }
+        assertEquals("phonet" + mode + " mismatches of " + words.size() + " inputs:" + report, 0, mismatches);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * SoundexBenchmark.java
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package de.zedlitz.phonet4java;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Soundex and SoundexRefined on the classification table against
+ * {@link BaselineSoundex} and {@link BaselineSoundexRefined}, which catch an
+ * ArrayIndexOutOfBoundsException for every character that is not a letter,
+ * coding 1000 texts per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SoundexBenchmark {
+    @Param({"word", "line", "noisy"})
+    public String kind;
+
+    private String[] texts;
+    private BaselineSoundex baselineSoundex;
+    private BaselineSoundexRefined baselineRefined;
+    private Soundex soundex;
+    private SoundexRefined refined;
+
+    @Setup
+    public void setUp() {
+        texts = BenchmarkTexts.of(kind, 1000);
+        baselineSoundex = new BaselineSoundex();
+        baselineRefined = new BaselineSoundexRefined();
+        soundex = new Soundex();
+        refined = new SoundexRefined();
+        for (final String text : texts) {
+            if (!baselineSoundex.code(text).equals(soundex.code(text))
+                || !baselineRefined.code(text).equals(refined.code(text))) {
+                throw new IllegalStateException("different codes of '" + text + "'");
+            }
+        }
+    }
+
+    @Benchmark
+    public void soundexBaseline(final Blackhole blackhole) {
+        for (final String text : texts) {
+            blackhole.consume(baselineSoundex.code(text));
+        }
+    }
+
+    @Benchmark
+    public void soundexTable(final Blackhole blackhole) {
+        for (final String text : texts) {
+            blackhole.consume(soundex.code(text));
+        }
+    }
+
+    @Benchmark
+    public void refinedBaseline(final Blackhole blackhole) {
+        for (final String text : texts) {
+            blackhole.consume(baselineRefined.code(text));
+        }
+    }
+
+    @Benchmark
+    public void refinedTable(final Blackhole blackhole) {
+        for (final String text : texts) {
+            blackhole.consume(refined.code(text));
+        }
+    }
+}
@@ -30,6 +30,43 @@ var OcrOptions = function () {
 
     // Debug mode or not
     this.debug = false;
+
+    // Maximum number of Daitch-Mokotoff codes per keyword/line when fieldMatchingMethodAndroid
+    // is de.zedlitz.phonet4java.DaitchMokotoff (one code per reading of ambiguous sounds like "CH")
+    this.phoneticMaxCodes = 16;
+
+    // Size of the phonetic code cache in characters of cached OCR text (0 disables it).
+    // Lines that repeat across frames are then encoded only once.
+    this.phoneticCacheSize = 65536;
+
+    // Engine for the value Patterns of the dictionary: "regex" (java.util.regex) or "dfa".
+    // "dfa" matches the patterns it supports in linear time, so that a badly written pattern
+    // cannot stall the camera; the others are matched by java.util.regex, giving up after
+    // valuePatternTimeLimit milliseconds.
+    this.valuePatternEngine = "regex";
+    this.valuePatternTimeLimit = 50;
+
+    // Postal code rules by country, e.g. {"New Zealand": ["[0-9]{4}$"]}, replacing the built-in
+    // rules of that country. A line matching a rule of the selected country is taken as the end
+    // of the Service Address when the dictionary has no keyword for it.
+    this.postalCodes = {};
+
+    // Number of readings each value is voted from (0 keeps the longest value read). A value
+    // then needs several agreeing readings to replace another, and each item of a result gets
+    // its "confidence", the share of the last readings agreeing on it. Once every Mandatory
+    // item (and at least one item) reaches consensusThreshold, a result with "Stable": true
+    // is sent, once, so that the app can stop the camera.
+    this.consensusFrames = 0;
+    this.consensusThreshold = 0.6;
+
+    // Number of threads finding the values of the fields of a frame, at most the number of
+    // cores. More than 1 helps large dictionaries; each field is still searched by one thread.
+    this.extractionThreads = 1;
+
+    // Time budget in milliseconds for matching a frame (0 for none). Once it is spent, the
+    // remaining fields are left for the next frame, where they go first. Fields are searched
+    // Mandatory first, then those without a value, then those with one.
+    this.frameTimeBudget = 0;
 };
 
 module.exports = OcrOptions;